@@ -0,0 +1,90 @@
+package edu.berkeley.cs.succinct.perf.jmh;
+
+import edu.berkeley.cs.succinct.StorageMode;
+import edu.berkeley.cs.succinct.buffers.SuccinctBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH harness for the core SuccinctBuffer lookups (NPA, SA, ISA).
+ *
+ * The serialized dataset is passed in as a parameter, e.g.
+ *   java -jar jmh/target/benchmarks.jar -p dataPath=/path/to/data.succinct
+ * Each (dataPath, storageMode) pair is loaded once per fork; lookups cycle through a
+ * pre-generated set of random indices so that no allocation or random number generation
+ * happens inside the measured method.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgsAppend = {"-XX:+UseParallelGC"})
+public class SuccinctBufferJmhBench {
+
+    private static final int NUM_INDICES = 1 << 20; // must be a power of two
+    private static final long SEED = 42L;
+
+    @State(Scope.Benchmark)
+    public static class Dataset {
+
+        @Param({""})
+        public String dataPath;
+
+        @Param({"MEMORY_ONLY", "MEMORY_MAPPED"})
+        public StorageMode storageMode;
+
+        SuccinctBuffer buffer;
+        long[] indices;
+
+        @Setup(Level.Trial)
+        public void load() {
+            if (dataPath == null || dataPath.isEmpty()) {
+                throw new IllegalArgumentException("Serialized data path must be specified with -p dataPath=<path>");
+            }
+            buffer = new SuccinctBuffer(dataPath, storageMode);
+
+            int limit = buffer.getOriginalSize();
+            Random rand = new Random(SEED);
+            indices = new long[NUM_INDICES];
+            for (int i = 0; i < NUM_INDICES; i++) {
+                indices[i] = rand.nextInt(limit);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int pos;
+
+        @Setup(Level.Trial)
+        public void init() {
+            // Spread threads over the index set so that they do not walk it in lock-step
+            pos = (int) (Thread.currentThread().getId() * 7919) & (NUM_INDICES - 1);
+        }
+
+        long next(long[] indices) {
+            long idx = indices[pos];
+            pos = (pos + 1) & (NUM_INDICES - 1);
+            return idx;
+        }
+    }
+
+    @Benchmark
+    public void lookupNPA(Dataset d, Cursor c, Blackhole bh) {
+        bh.consume(d.buffer.lookupNPA(c.next(d.indices)));
+    }
+
+    @Benchmark
+    public void lookupSA(Dataset d, Cursor c, Blackhole bh) {
+        bh.consume(d.buffer.lookupSA(c.next(d.indices)));
+    }
+
+    @Benchmark
+    public void lookupISA(Dataset d, Cursor c, Blackhole bh) {
+        bh.consume(d.buffer.lookupISA(c.next(d.indices)));
+    }
+
+}
@@ -1,11 +1,23 @@
 package edu.berkeley.cs.succinct.perf;
 
 import edu.berkeley.cs.succinct.StorageMode;
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+import edu.berkeley.cs.succinct.perf.buffers.ShardedSuccinctFileBufferBench;
 import edu.berkeley.cs.succinct.perf.buffers.SuccinctBufferBench;
 import edu.berkeley.cs.succinct.perf.buffers.SuccinctFileBufferBench;
 import edu.berkeley.cs.succinct.perf.buffers.TFSSuccinctFileBufferBench;
 import edu.berkeley.cs.succinct.perf.streams.SuccinctFileStreamBench;
+import edu.berkeley.cs.succinct.perf.build.PartitionedBuilder;
+import edu.berkeley.cs.succinct.perf.storage.CachingFileSystem;
+import edu.berkeley.cs.succinct.perf.storage.EmulatedRemoteFileSystem;
+import edu.berkeley.cs.succinct.perf.storage.HadoopStorageBackend;
+import edu.berkeley.cs.succinct.perf.storage.LocalStorageBackend;
+import edu.berkeley.cs.succinct.perf.storage.StorageBackend;
+import edu.berkeley.cs.succinct.perf.storage.StorageBackends;
+import edu.berkeley.cs.succinct.perf.storage.TachyonStorageBackend;
 import edu.berkeley.cs.succinct.perf.streams.SuccinctStreamBench;
+import edu.berkeley.cs.succinct.perf.workload.OperationMix;
+import edu.berkeley.cs.succinct.perf.workload.Workload;
 import org.apache.commons.cli.*;
 
 import java.io.File;
@@ -29,8 +41,44 @@ public class Benchmark {
                 + " Can be MEMORY_ONLY or MEMORY_MAPPED.");
         options.addOption("d", true, "Path to serialized Succinct data. (REQUIRED)");
         options.addOption("t", true, "Tachyon master path (REQUIRED if file on TFS)");
-        options.addOption("n", true, "Number of threads for throughput bench (on SuccinctFileBuffer[-TFS])");
+        options.addOption("n", true, "Number of threads for throughput bench (on SuccinctFileBuffer[-TFS])."
+            + " A list (e.g. 1,2,4,8) or doubling range (e.g. 1..32 or 1..max) runs a thread-scaling sweep.");
         options.addOption("e", true, "Length of extract queries");
+        options.addOption("qps", true, "Target offered load (queries per second) for open-loop benchmarks");
+        options.addOption("a", true, "Arrival process for open-loop benchmarks. Can be CONSTANT or POISSON.");
+        options.addOption("k", true, "Number of patterns per batch for batched count/search benchmarks");
+        options.addOption("cs", true, "Comma-separated cache sizes in bytes, with optional k/m/g suffix,"
+            + " for cached search benchmarks (e.g. 16m,64m,256m)");
+        options.addOption("w", true, "Distribution of generated offsets and indices: uniform, zipfian[:theta],"
+            + " hotspot[:hotFraction[:hotOpFraction]], latest[:theta] or sequential[:stride]. Default uniform.");
+        options.addOption("wq", true, "Distribution used to sample queries from the query file (same choices as -w)."
+            + " By default queries are replayed in file order.");
+        options.addOption("mix", true, "Operation mix for mixed-workload benchmarks, as op:weight[:distribution],..."
+            + " (e.g. extract:70,search:20:zipfian,count:10). Default extract:70,search:20,count:10.");
+        options.addOption("c", true, "Number of concurrent in-flight requests for concurrency benchmarks");
+        options.addOption("x", true, "Execution mode for concurrency benchmarks."
+            + " Can be FIXED_POOL, VIRTUAL or ASYNC.");
+        options.addOption("backend", true, "Storage backend to read the data from: " + StorageBackends.NAMES + "."
+            + " Applies to all benchmark classes; by default buffers are read from local files (-s), streams"
+            + " through the default Hadoop file system and -TFS classes from tfs (-t).");
+        options.addOption("rl", true, "Emulate remote storage: latency of each round-trip, in microseconds");
+        options.addOption("rj", true, "Emulate remote storage: mean jitter added to each round-trip, in microseconds");
+        options.addOption("rb", true, "Emulate remote storage: link bandwidth in MB/s (default unlimited)");
+        options.addOption("pc", true, "Off-heap page cache budget in bytes (optional k/m/g suffix) for stream"
+            + " benchmarks; no cache by default");
+        options.addOption("ps", true, "Page size of the page cache in bytes (optional k/m/g suffix; default 64k)");
+        options.addOption("ra", true, "Maximum readahead window, in pages, for sequential reads through the page"
+            + " cache (-pc); off by default");
+        options.addOption("wm", true, "Warm mode for Startup benchmarks. Can be NONE (default), PREFAULT (touch"
+            + " every page of the data before the first query) or PRELOAD (run untimed queries first).");
+        options.addOption("lt", true, "Number of threads reading MEMORY_ONLY data from local files (default 1)");
+        options.addOption("o", true, "Output prefix for the build command (default: the input path), or output path"
+            + " for the corpus command (default: the query file path with .qc appended)");
+        options.addOption("np", true, "Number of partitions for the build command (default: one per thread)");
+        options.addOption("lm", true, "How Succinct data on TFS is loaded into memory."
+            + " Can be HEAP, DIRECT (off-heap, default) or MAPPED (zero-copy map of a local copy).");
+        options.addOption("vm", true, "Extract mode for VanillaTachyon benchmarks. Can be PER_BYTE, BULK_GET, SLICE or"
+            + " MAPPED; each mode is run in turn by default.");
 
         HelpFormatter formatter = new HelpFormatter();
 
@@ -45,15 +93,102 @@ public class Benchmark {
             String dataPath = line.getOptionValue("d");
             String tfsPath = line.getOptionValue("t");
             int threads = 1, extrLen = 1000;
+            int[] threadLevels = {1};
+            double qps = 1000.0;
+            OpenLoopDriver.ArrivalProcess arrivals = OpenLoopDriver.ArrivalProcess.POISSON;
+            int concurrency = 1000;
+            OperationMix operationMix = OperationMix.parse(line.getOptionValue("mix", "extract:70,search:20,count:10"));
+            int maxReadahead = 64;
+            StartupBench.WarmMode warmMode = StartupBench.WarmMode.NONE;
+            VanillaTachyonBench.ExtractMode[] extractModes = VanillaTachyonBench.ExtractMode.values();
+            int loadThreads = 1;
+            int batchSize = 1000;
+            long[] cacheSizes = {64L << 20};
+            ConcurrencyDriver.ExecutionMode executionMode = ConcurrencyDriver.ExecutionMode.VIRTUAL;
 
             if (line.getOptionValue("n") != null) {
-                threads = Integer.parseInt(line.getOptionValue("n"));
+                try {
+                    threadLevels = BenchmarkUtils.parseThreadLevels(line.getOptionValue("n"));
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Invalid thread levels (-n): " + e.getMessage());
+                    formatter.printHelp("succinct-perf", options);
+                    System.exit(0);
+                    return;
+                }
+                threads = threadLevels[0];
             }
 
             if (line.getOptionValue("e") != null) {
                 extrLen = Integer.parseInt(line.getOptionValue("e"));
             }
 
+            if (line.getOptionValue("qps") != null) {
+                qps = Double.parseDouble(line.getOptionValue("qps"));
+            }
+
+            if (line.getOptionValue("a") != null) {
+                arrivals = OpenLoopDriver.ArrivalProcess.valueOf(line.getOptionValue("a"));
+            }
+
+            if (line.getOptionValue("k") != null) {
+                batchSize = Integer.parseInt(line.getOptionValue("k"));
+                if (batchSize < 1) {
+                    System.out.println("Batch size (-k) must be at least 1.");
+                    formatter.printHelp("succinct-perf", options);
+                    System.exit(0);
+                }
+            }
+
+            if (line.getOptionValue("cs") != null) {
+                cacheSizes = BenchmarkUtils.parseByteSizes(line.getOptionValue("cs"));
+            }
+
+            try {
+                if (line.getOptionValue("w") != null) {
+                    BenchmarkUtils.setOffsetWorkload(Workload.parse(line.getOptionValue("w")));
+                }
+
+                if (line.getOptionValue("wq") != null) {
+                    BenchmarkUtils.setQueryWorkload(Workload.parse(line.getOptionValue("wq")));
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid workload (-w/-wq): " + e.getMessage());
+                formatter.printHelp("succinct-perf", options);
+                System.exit(0);
+                return;
+            }
+
+            if (line.getOptionValue("c") != null) {
+                concurrency = Integer.parseInt(line.getOptionValue("c"));
+            }
+
+            if (line.getOptionValue("x") != null) {
+                executionMode = ConcurrencyDriver.ExecutionMode.valueOf(line.getOptionValue("x"));
+            }
+
+            if (line.getOptionValue("ra") != null) {
+                maxReadahead = Integer.parseInt(line.getOptionValue("ra"));
+                CachingFileSystem.setMaxReadahead(maxReadahead);
+            }
+
+            if (line.getOptionValue("lt") != null) {
+                loadThreads = Integer.parseInt(line.getOptionValue("lt"));
+            }
+
+            if (line.getOptionValue("wm") != null) {
+                warmMode = StartupBench.WarmMode.valueOf(line.getOptionValue("wm"));
+            }
+
+            if (line.getOptionValue("lm") != null) {
+                TachyonUtil.setLoadMode(TachyonUtil.LoadMode.valueOf(line.getOptionValue("lm")));
+            }
+
+            if (line.getOptionValue("vm") != null) {
+                extractModes = new VanillaTachyonBench.ExtractMode[] {
+                    VanillaTachyonBench.ExtractMode.valueOf(line.getOptionValue("vm"))
+                };
+            }
+
             StorageMode storageMode;
             if(storageModeString == null || storageModeString.equals("MEMORY_ONLY")) {
                 storageMode = StorageMode.MEMORY_ONLY;
@@ -61,7 +196,37 @@ public class Benchmark {
                 storageMode = StorageMode.MEMORY_MAPPED;
             }
 
-            if(dataPath == null) {
+            StorageBackend backend, tfsBackend, streamBackend;
+            if (line.getOptionValue("backend") != null) {
+                backend = StorageBackends.forName(line.getOptionValue("backend"), tfsPath, loadThreads);
+                tfsBackend = backend;
+                streamBackend = backend;
+            } else {
+                backend = new LocalStorageBackend(storageMode, loadThreads);
+                tfsBackend = new TachyonStorageBackend(tfsPath);
+                streamBackend = new HadoopStorageBackend();
+            }
+
+            boolean emulateRemote = line.getOptionValue("rl") != null || line.getOptionValue("rj") != null
+                || line.getOptionValue("rb") != null;
+            if (emulateRemote) {
+                long latency = Long.parseLong(line.getOptionValue("rl", "0"));
+                long jitter = Long.parseLong(line.getOptionValue("rj", "0"));
+                double bandwidth = Double.parseDouble(line.getOptionValue("rb", "0"));
+                backend = StorageBackends.emulateRemote(backend, latency, jitter, bandwidth);
+                tfsBackend = StorageBackends.emulateRemote(tfsBackend, latency, jitter, bandwidth);
+                streamBackend = StorageBackends.emulateRemote(streamBackend, latency, jitter, bandwidth);
+                System.out.println("Reading data from " + streamBackend.getName());
+            }
+
+            if (line.getOptionValue("pc") != null) {
+                long budget = BenchmarkUtils.parseByteSize(line.getOptionValue("pc"));
+                int pageSize = (int) BenchmarkUtils.parseByteSize(line.getOptionValue("ps", "64k"));
+                streamBackend = StorageBackends.withPageCache(streamBackend, budget, pageSize);
+                System.out.println("Reading stream data from " + streamBackend.getName());
+            }
+
+            if(dataPath == null && !"corpus".equals(benchType)) {
                 System.out.println("Data path must be specified.");
                 formatter.printHelp("succinct-perf", options);
                 System.exit(0);
@@ -92,35 +257,64 @@ public class Benchmark {
             if(benchParams.length == 1) {
                 if (benchParams[0].equals("all")) {
                     System.out.println("Benchmarking all classes and methods...");
-                    new SuccinctBufferBench(dataPath, storageMode).benchAll(resPath + "_sb");
-                    new SuccinctFileBufferBench(dataPath, storageMode)
-                        .benchAll(queryFile, resPath + "_sfb", threads, extrLen);
-                    new SuccinctStreamBench(dataPath).benchAll(resPath + "_ss");
-                    new SuccinctFileStreamBench(dataPath).benchAll(queryFile, resPath + "_sfs");
+                    new SuccinctBufferBench(backend, dataPath).benchAll(resPath + "_sb");
+                    new SuccinctFileBufferBench(backend, dataPath)
+                        .benchAll(queryFile, resPath + "_sfb", threadLevels, extrLen);
+                    new SuccinctStreamBench(streamBackend, dataPath).benchAll(resPath + "_ss");
+                    new SuccinctFileStreamBench(streamBackend, dataPath).benchAll(queryFile, resPath + "_sfs");
                 } else if(benchParams[0].equals("SuccinctBuffer")) {
                     System.out.println("Benchmarking all methods for SuccinctBuffer...");
-                    new SuccinctBufferBench(dataPath, storageMode).benchAll(resPath);
+                    new SuccinctBufferBench(backend, dataPath).benchAll(resPath);
                 } else if(benchParams[0].equals("SuccinctBuffer-TFS")) {
                     System.out.println("Benchmarking all methods for SuccinctBuffer... (from TFS)");
-                    new SuccinctBufferBench(tfsPath, dataPath).benchAll(resPath);
+                    new SuccinctBufferBench(tfsBackend, dataPath).benchAll(resPath);
                 } else if(benchParams[0].equals("SuccinctFileBuffer")) {
                     System.out.println("Benchmarking all methods for SuccinctFileBuffer...");
-                    new SuccinctFileBufferBench(dataPath, storageMode).benchAll(queryFile, resPath, threads, extrLen);
+                    new SuccinctFileBufferBench(backend, dataPath).benchAll(queryFile, resPath, threadLevels, extrLen);
                 } else if(benchParams[0].equals("SuccinctFileBuffer-TFS")) {
                     System.out.println("Benchmarking all methods for SuccinctFileBuffer (from TFS)...");
-                    new SuccinctFileBufferBench(tfsPath, dataPath).benchAll(queryFile, resPath, threads, extrLen);
+                    new SuccinctFileBufferBench(tfsBackend, dataPath).benchAll(queryFile, resPath, threadLevels, extrLen);
                 } else if(benchParams[0].equals("SuccinctStream")) {
                     System.out.println("Benchmarking all methods for SuccinctStream...");
-                    new SuccinctStreamBench(dataPath).benchAll(resPath);
+                    new SuccinctStreamBench(streamBackend, dataPath).benchAll(resPath);
                 } else if(benchParams[0].equals("SuccinctFileStream")) {
                     System.out.println("Benchmarking all methods for SuccinctFileStream...");
-                    new SuccinctFileStreamBench(dataPath).benchAll(queryFile, resPath);
+                    new SuccinctFileStreamBench(streamBackend, dataPath).benchAll(queryFile, resPath);
                 } else if(benchParams[0].equals("VanillaTachyon")) {
                     System.out.println("Benchmarking all methods for VanillaTachyon...");
-                    new VanillaTachyonBench(tfsPath, dataPath).benchAll(resPath, extrLen, threads);
+                    new VanillaTachyonBench(tfsBackend, dataPath).benchAll(resPath, extrLen, threads, extractModes);
+                } else if(benchParams[0].equals("ShardedSuccinctFileBuffer")) {
+                    System.out.println("Benchmarking ShardedSuccinctFileBuffer against shard count...");
+                    ShardedSuccinctFileBufferBench.benchShardScaling(backend, dataPath.split(","), queryFile, resPath,
+                        extrLen, threads);
+                } else if(benchParams[0].equals("build")) {
+                    int buildThreads = line.getOptionValue("n") != null ? threads
+                        : Runtime.getRuntime().availableProcessors();
+                    int numPartitions = line.getOptionValue("np") != null ? Integer.parseInt(line.getOptionValue("np"))
+                        : buildThreads;
+                    String outputPrefix = line.getOptionValue("o", dataPath);
+                    new PartitionedBuilder(dataPath, outputPrefix, numPartitions, buildThreads).build(resPath);
+                } else if(benchParams[0].equals("corpus")) {
+                    if(queryFile == null) {
+                        System.out.println("Query file (-q) must be specified for the corpus command.");
+                        System.exit(0);
+                    }
+                    String corpusPath = line.getOptionValue("o", queryFile + ".qc");
+                    SuccinctFileBuffer countBuffer = dataPath != null ? backend.openFileBuffer(dataPath) : null;
+                    int numQueries = QueryCorpus.generate(queryFile, corpusPath, countBuffer);
+                    System.out.println("Wrote " + numQueries + " queries" + (countBuffer != null ? " with expected counts"
+                        : "") + " to " + corpusPath);
+                } else if(benchParams[0].equals("Load")) {
+                    System.out.println("Benchmarking parallel load...");
+                    int[] loadThreadLevels = line.getOptionValue("n") != null ? threadLevels
+                        : BenchmarkUtils.parseThreadLevels("1..max");
+                    new LoadBench(dataPath).benchLoad(resPath, loadThreadLevels);
+                } else if(benchParams[0].equals("Startup")) {
+                    System.out.println("Benchmarking startup for all loading paths...");
+                    new StartupBench(tfsBackend, streamBackend, dataPath, warmMode).benchAll(resPath);
                 } else {
                     System.out.println("Invalid benchmark specification.");
-                    System.out.println("Test class must be one of SuccinctBuffer, SuccinctFileBuffer, SuccinctFileBuffer-TFS, SuccinctStream, SuccinctFileStream or all");
+                    System.out.println("Test class must be one of SuccinctBuffer, SuccinctFileBuffer, SuccinctFileBuffer-TFS, SuccinctStream, SuccinctFileStream, ShardedSuccinctFileBuffer, Startup, Load, build, corpus or all");
                     formatter.printHelp("succinct-perf", options);
                     System.exit(0);
                 }
@@ -128,13 +322,13 @@ public class Benchmark {
                 if (benchParams[0].equals("SuccinctBuffer")) {
                     if(benchParams[1].equals("lookupNPA")) {
                         System.out.println("Benchmarking SuccinctBuffer.lookupNPA...");
-                        new SuccinctBufferBench(dataPath, storageMode).benchLookupNPA(resPath);
+                        new SuccinctBufferBench(backend, dataPath).benchLookupNPA(resPath);
                     } else if(benchParams[1].equals("lookupSA")) {
                         System.out.println("Benchmarking SuccinctBuffer.lookupSA...");
-                        new SuccinctBufferBench(dataPath, storageMode).benchLookupSA(resPath);
+                        new SuccinctBufferBench(backend, dataPath).benchLookupSA(resPath);
                     } else if(benchParams[1].equals("lookupISA")) {
                         System.out.println("Benchmarking SuccinctBuffer.lookupISA...");
-                        new SuccinctBufferBench(dataPath, storageMode).benchLookupISA(resPath);
+                        new SuccinctBufferBench(backend, dataPath).benchLookupISA(resPath);
                     } else {
                         System.out.println("Invalid benchmark specification.");
                         formatter.printHelp("succinct-perf", options);
@@ -143,13 +337,13 @@ public class Benchmark {
                 } else if (benchParams[0].equals("SuccinctBuffer-TFS")) {
                     if(benchParams[1].equals("lookupNPA")) {
                         System.out.println("Benchmarking SuccinctBuffer.lookupNPA (from TFS)...");
-                        new SuccinctBufferBench(tfsPath, dataPath).benchLookupNPA(resPath);
+                        new SuccinctBufferBench(tfsBackend, dataPath).benchLookupNPA(resPath);
                     } else if(benchParams[1].equals("lookupSA")) {
                         System.out.println("Benchmarking SuccinctBuffer.lookupSA (from TFS)...");
-                        new SuccinctBufferBench(tfsPath, dataPath).benchLookupSA(resPath);
+                        new SuccinctBufferBench(tfsBackend, dataPath).benchLookupSA(resPath);
                     } else if(benchParams[1].equals("lookupISA")) {
                         System.out.println("Benchmarking SuccinctBuffer.lookupISA (from TFS)...");
-                        new SuccinctBufferBench(tfsPath, dataPath).benchLookupISA(resPath);
+                        new SuccinctBufferBench(tfsBackend, dataPath).benchLookupISA(resPath);
                     } else {
                         System.out.println("Invalid benchmark specification.");
                         formatter.printHelp("succinct-perf", options);
@@ -159,13 +353,69 @@ public class Benchmark {
                 else if(benchParams[0].equals("SuccinctFileBuffer")) {
                     if(benchParams[1].equals("count")) {
                         System.out.println("Benchmarking SuccinctFileBuffer.count...");
-                        new SuccinctFileBufferBench(dataPath, storageMode).benchCountLatency(queryFile, resPath);
+                        new SuccinctFileBufferBench(backend, dataPath).benchCountLatency(queryFile, resPath);
                     } else if(benchParams[1].equals("search")) {
                         System.out.println("Benchmarking SuccinctFileBuffer.search...");
-                        new SuccinctFileBufferBench(dataPath, storageMode).benchSearchLatency(queryFile, resPath);
+                        new SuccinctFileBufferBench(backend, dataPath).benchSearchLatency(queryFile, resPath);
                     } else if(benchParams[1].equals("extract")) {
                         System.out.println("Benchmarking SuccinctFileBuffer.extract...");
-                        new SuccinctFileBufferBench(dataPath, storageMode).benchExtractLatency(resPath, extrLen);
+                        new SuccinctFileBufferBench(backend, dataPath).benchExtractLatency(resPath, extrLen);
+                    } else if(benchParams[1].equals("count-ol")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.count under open-loop load...");
+                        new SuccinctFileBufferBench(backend, dataPath)
+                            .benchCountOpenLoop(queryFile, resPath, qps, arrivals, threads);
+                    } else if(benchParams[1].equals("search-ol")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.search under open-loop load...");
+                        new SuccinctFileBufferBench(backend, dataPath)
+                            .benchSearchOpenLoop(queryFile, resPath, qps, arrivals, threads);
+                    } else if(benchParams[1].equals("extract-ol")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.extract under open-loop load...");
+                        new SuccinctFileBufferBench(backend, dataPath)
+                            .benchExtractOpenLoop(resPath, extrLen, qps, arrivals, threads);
+                    } else if(benchParams[1].equals("count-batch")) {
+                        System.out.println("Benchmarking batched SuccinctFileBuffer.count...");
+                        new SuccinctFileBufferBench(backend, dataPath).benchCountBatch(queryFile, resPath, batchSize);
+                    } else if(benchParams[1].equals("search-batch")) {
+                        System.out.println("Benchmarking batched SuccinctFileBuffer.search...");
+                        new SuccinctFileBufferBench(backend, dataPath).benchSearchBatch(queryFile, resPath, batchSize);
+                    } else if(benchParams[1].equals("search-alloc")) {
+                        System.out.println("Benchmarking boxed vs. primitive SuccinctFileBuffer.search...");
+                        new SuccinctFileBufferBench(backend, dataPath).benchSearchAllocation(queryFile, resPath);
+                    } else if(benchParams[1].equals("search-cached")) {
+                        System.out.println("Benchmarking cached SuccinctFileBuffer.search...");
+                        new SuccinctFileBufferBench(backend, dataPath).benchCachedSearch(queryFile, resPath, cacheSizes);
+                    } else if(benchParams[1].equals("count-conc")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.count under concurrent load...");
+                        new SuccinctFileBufferBench(backend, dataPath)
+                            .benchCountConcurrent(queryFile, resPath, executionMode, concurrency, threads);
+                    } else if(benchParams[1].equals("search-conc")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.search under concurrent load...");
+                        new SuccinctFileBufferBench(backend, dataPath)
+                            .benchSearchConcurrent(queryFile, resPath, executionMode, concurrency, threads);
+                    } else if(benchParams[1].equals("extract-conc")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.extract under concurrent load...");
+                        new SuccinctFileBufferBench(backend, dataPath)
+                            .benchExtractConcurrent(resPath, extrLen, executionMode, concurrency, threads);
+                    } else if(benchParams[1].equals("search-thr")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.search throughput...");
+                        SuccinctFileBufferBench bench = new SuccinctFileBufferBench(backend, dataPath);
+                        if (threadLevels.length == 1) {
+                            bench.benchSearchThroughput(queryFile, resPath, threads);
+                        } else {
+                            bench.benchSearchScalability(queryFile, resPath, threadLevels);
+                        }
+                    } else if(benchParams[1].equals("extract-thr")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.extract throughput...");
+                        SuccinctFileBufferBench bench = new SuccinctFileBufferBench(backend, dataPath);
+                        if (threadLevels.length == 1) {
+                            bench.benchExtractThroughput(resPath, extrLen, threads);
+                        } else {
+                            bench.benchExtractScalability(resPath, extrLen, threadLevels);
+                        }
+                    } else if(benchParams[1].equals("mixed")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer under a mixed workload...");
+                        new SuccinctFileBufferBench(backend, dataPath)
+                            .benchMixed(queryFile, resPath, extrLen, threads, operationMix);
                     } else {
                         System.out.println("Invalid benchmark specification.");
                         formatter.printHelp("succinct-perf", options);
@@ -174,41 +424,66 @@ public class Benchmark {
                 } else if(benchParams[0].equals("SuccinctFileBuffer-TFS")) {
                     if (benchParams[1].equals("count-lat")) {
                         System.out.println("Benchmarking SuccinctFileBuffer.count latency (from TFS)...");
-                        new SuccinctFileBufferBench(tfsPath, dataPath).benchCountLatency(queryFile, resPath);
+                        new SuccinctFileBufferBench(tfsBackend, dataPath).benchCountLatency(queryFile, resPath);
                     } else if (benchParams[1].equals("search-lat")) {
                         System.out.println("Benchmarking SuccinctFileBuffer.search latency (from TFS)...");
-                        new SuccinctFileBufferBench(tfsPath, dataPath).benchSearchLatency(queryFile, resPath);
+                        new SuccinctFileBufferBench(tfsBackend, dataPath).benchSearchLatency(queryFile, resPath);
                     } else if (benchParams[1].equals("extract-lat")) {
                         System.out.println("Benchmarking SuccinctFileBuffer.extract latency (from TFS)...");
-                        new SuccinctFileBufferBench(tfsPath, dataPath).benchExtractLatency(resPath, extrLen);
+                        new SuccinctFileBufferBench(tfsBackend, dataPath).benchExtractLatency(resPath, extrLen);
                     } else if (benchParams[1].equals("extract-thr")) {
                         System.out.println("Benchmarking SuccinctFileBuffer.extract throughput (from TFS)...");
-                        new SuccinctFileBufferBench(tfsPath, dataPath).benchExtractThroughput(extrLen, threads);
+                        SuccinctFileBufferBench bench = new SuccinctFileBufferBench(tfsBackend, dataPath);
+                        if (threadLevels.length == 1) {
+                            bench.benchExtractThroughput(resPath, extrLen, threads);
+                        } else {
+                            bench.benchExtractScalability(resPath, extrLen, threadLevels);
+                        }
                     } else if (benchParams[1].equals("search-thr")) {
                         System.out.println("Benchmarking SuccinctFileBuffer.search throughput (from TFS)...");
-                        new SuccinctFileBufferBench(tfsPath, dataPath).benchSearchThroughput(queryFile, threads);
+                        SuccinctFileBufferBench bench = new SuccinctFileBufferBench(tfsBackend, dataPath);
+                        if (threadLevels.length == 1) {
+                            bench.benchSearchThroughput(queryFile, resPath, threads);
+                        } else {
+                            bench.benchSearchScalability(queryFile, resPath, threadLevels);
+                        }
+                    } else if (benchParams[1].equals("count-ol")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.count under open-loop load (from TFS)...");
+                        new SuccinctFileBufferBench(tfsBackend, dataPath)
+                            .benchCountOpenLoop(queryFile, resPath, qps, arrivals, threads);
+                    } else if (benchParams[1].equals("search-ol")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.search under open-loop load (from TFS)...");
+                        new SuccinctFileBufferBench(tfsBackend, dataPath)
+                            .benchSearchOpenLoop(queryFile, resPath, qps, arrivals, threads);
+                    } else if (benchParams[1].equals("extract-ol")) {
+                        System.out.println("Benchmarking SuccinctFileBuffer.extract under open-loop load (from TFS)...");
+                        new SuccinctFileBufferBench(tfsBackend, dataPath)
+                            .benchExtractOpenLoop(resPath, extrLen, qps, arrivals, threads);
                     } else {
                         System.out.println("Invalid benchmark specification.");
                         formatter.printHelp("succinct-perf", options);
                         System.exit(0);
                     }
                 } else if (benchParams[0].equals("VanillaTachyon")) {
-                    if (benchParams[1].equals("extr-lat")) {
-                        new VanillaTachyonBench(tfsPath, dataPath).benchExtractLatency(resPath, extrLen);
-                    }
-                    else if (benchParams[1].equals("extr-thr")) {
-                        new VanillaTachyonBench(tfsPath, dataPath).benchExtractThroughput(extrLen, threads);
+                    VanillaTachyonBench bench = new VanillaTachyonBench(tfsBackend, dataPath);
+                    for (VanillaTachyonBench.ExtractMode mode : extractModes) {
+                        String modePath = extractModes.length > 1 ? resPath + "_" + mode.name().toLowerCase() : resPath;
+                        if (benchParams[1].equals("extr-lat")) {
+                            bench.benchExtractLatency(modePath, extrLen, mode);
+                        } else if (benchParams[1].equals("extr-thr")) {
+                            bench.benchExtractThroughput(modePath, extrLen, threads, mode);
+                        }
                     }
                 } else if(benchParams[0].equals("SuccinctStream")) {
                     if(benchParams[1].equals("lookupNPA")) {
                         System.out.println("Benchmarking SuccinctStream.lookupNPA...");
-                        new SuccinctStreamBench(dataPath).benchLookupNPA(resPath);
+                        new SuccinctStreamBench(streamBackend, dataPath).benchLookupNPA(resPath);
                     } else if(benchParams[1].equals("lookupSA")) {
                         System.out.println("Benchmarking SuccinctStream.lookupSA...");
-                        new SuccinctStreamBench(dataPath).benchLookupSA(resPath);
+                        new SuccinctStreamBench(streamBackend, dataPath).benchLookupSA(resPath);
                     } else if(benchParams[1].equals("lookupISA")) {
                         System.out.println("Benchmarking SuccinctStream.lookupISA...");
-                        new SuccinctStreamBench(dataPath).benchLookupISA(resPath);
+                        new SuccinctStreamBench(streamBackend, dataPath).benchLookupISA(resPath);
                     } else {
                         System.out.println("Invalid benchmark specification.");
                         formatter.printHelp("succinct-perf", options);
@@ -217,22 +492,38 @@ public class Benchmark {
                 } else if(benchParams[0].equals("SuccinctFileStream")) {
                     if(benchParams[1].equals("count")) {
                         System.out.println("Benchmarking SuccinctFileStream.count...");
-                        new SuccinctFileStreamBench(dataPath).benchCount(queryFile, resPath);
+                        new SuccinctFileStreamBench(streamBackend, dataPath).benchCount(queryFile, resPath);
                     } else if(benchParams[1].equals("search")) {
                         System.out.println("Benchmarking SuccinctFileStream.search...");
-                        new SuccinctFileStreamBench(dataPath).benchSearch(queryFile, resPath);
+                        new SuccinctFileStreamBench(streamBackend, dataPath).benchSearch(queryFile, resPath);
                     } else if(benchParams[1].equals("extract")) {
                         System.out.println("Benchmarking SuccinctFileStream.extract...");
-                        new SuccinctFileStreamBench(dataPath).benchExtract(resPath);
+                        new SuccinctFileStreamBench(streamBackend, dataPath).benchExtract(resPath);
+                    } else if(benchParams[1].equals("readahead")) {
+                        System.out.println("Benchmarking SuccinctFileStream.readahead...");
+                        new SuccinctFileStreamBench(streamBackend, dataPath).benchReadahead(resPath, extrLen, maxReadahead);
                     } else {
                         System.out.println("Invalid benchmark specification.");
-                        System.out.println("Test method must be one of count, search or extract");
+                        System.out.println("Test method must be one of count, search, extract or readahead");
                         formatter.printHelp("succinct-perf", options);
                         System.exit(0);
                     }
+                } else if(benchParams[0].equals("Startup")) {
+                    StartupBench.LoadPath loadPath;
+                    try {
+                        loadPath = StartupBench.LoadPath.valueOf(benchParams[1]);
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Invalid benchmark specification.");
+                        System.out.println("Loading path must be one of MEMORY_ONLY, MEMORY_MAPPED, TFS or STREAM");
+                        formatter.printHelp("succinct-perf", options);
+                        System.exit(0);
+                        return;
+                    }
+                    System.out.println("Benchmarking startup for " + loadPath + "...");
+                    new StartupBench(tfsBackend, streamBackend, dataPath, warmMode).benchStartup(loadPath, resPath);
                 } else {
                     System.out.println("Invalid benchmark specification.");
-                    System.out.println("Test class must be one of SuccinctBuffer, SuccinctFileBuffer, SuccinctStream or SuccinctFileStream");
+                    System.out.println("Test class must be one of SuccinctBuffer, SuccinctFileBuffer, SuccinctStream, SuccinctFileStream or Startup");
                     formatter.printHelp("succinct-perf", options);
                     System.exit(0);
                 }
@@ -242,6 +533,10 @@ public class Benchmark {
                 System.exit(0);
             }
 
+            if (emulateRemote) {
+                EmulatedRemoteFileSystem.printStats();
+            }
+
         } catch (ParseException exception) {
             System.out.println("Could not parse command line options: " + exception.getMessage());
             formatter.printHelp("succinct-perf", options);
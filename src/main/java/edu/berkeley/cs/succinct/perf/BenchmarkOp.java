@@ -0,0 +1,14 @@
+package edu.berkeley.cs.succinct.perf;
+
+/**
+ * A single benchmarked operation, parameterized by the index of the query to run.
+ */
+public interface BenchmarkOp {
+
+    /**
+     * Executes the i-th query.
+     * @param i index of the query
+     * @return a value derived from the result (e.g. result count), so the call is not optimized away
+     */
+    long execute(int i);
+}
@@ -1,40 +1,258 @@
 package edu.berkeley.cs.succinct.perf;
 
+import edu.berkeley.cs.succinct.perf.workload.Workload;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
 
 public class BenchmarkUtils {
-    public static long[] generateRandoms(int numQueries, int limit) {
-        long[] randoms = new long[numQueries];
-        Random rand = new Random();
-        for(int i = 0; i < numQueries; i++) {
-            randoms[i] = rand.nextInt(limit);
-        }
-        return randoms;
+    // Distribution of generated offsets/indices
+    private static Workload offsetWorkload = Workload.UNIFORM;
+    // Distribution used to sample queries from query files; null replays them in file order
+    private static Workload queryWorkload = null;
+
+    public static void setOffsetWorkload(Workload workload) {
+        offsetWorkload = workload;
+    }
+
+    public static void setQueryWorkload(Workload workload) {
+        queryWorkload = workload;
+    }
+
+    public static Workload getOffsetWorkload() {
+        return offsetWorkload;
+    }
+
+    /**
+     * @return distribution used to sample queries from query files, or null if they are replayed
+     * in file order
+     */
+    public static Workload getQueryWorkload() {
+        return queryWorkload;
+    }
+
+    public static long[] generateRandoms(int numQueries, long limit) {
+        return offsetWorkload.generate(numQueries, limit);
     }
 
     public static String[] readQueryFile(String queryFile, int numQueries) throws IOException {
+        return readQueryFile(queryFile, numQueries, queryWorkload);
+    }
+
+    private static String[] readQueryFile(String queryFile, int numQueries, Workload queryWorkload) throws IOException {
         BufferedReader bufferedReader = new BufferedReader(new FileReader(queryFile));
         ArrayList<String> queries = new ArrayList<String>();
         int i = 0;
         String query;
-        while((query = bufferedReader.readLine()) != null && i < numQueries) {
+        while((query = bufferedReader.readLine()) != null && (queryWorkload != null || i < numQueries)) {
             queries.add(query);
             i++;
         }
+        bufferedReader.close();
+
+        if(queryWorkload != null) {
+            // Sample numQueries queries (with replacement) from all queries in the file
+            long[] indices = queryWorkload.generate(numQueries, queries.size());
+            String[] sampled = new String[numQueries];
+            for(int j = 0; j < numQueries; j++) {
+                sampled[j] = queries.get((int) indices[j]);
+            }
+            return sampled;
+        }
+
         if(i < numQueries) {
             System.err.println("[WARNING] Number of queries is less then " + numQueries);
         }
-        bufferedReader.close();
         return queries.toArray(new String[queries.size()]);
     }
 
+    /**
+     * Writes per-query results collected during a measurement loop, one query per line.
+     * @param resPath output path
+     * @param values per-query value written before the latency (e.g. result count); may be null
+     * @param latencies per-query latencies in nanoseconds
+     * @throws IOException
+     */
+    public static void writeResults(String resPath, long[] values, long[] latencies) throws IOException {
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        for(int i = 0; i < latencies.length; i++) {
+            if(values != null) {
+                bufferedWriter.write(values[i] + "\t");
+            }
+            bufferedWriter.write(latencies[i] + "\n");
+        }
+        bufferedWriter.close();
+    }
+
+    /**
+     * Reads queries from a query file: a query corpus (see QueryCorpus), which is memory-mapped,
+     * or a text file of one query per line, which is encoded once up front. Queries are sampled
+     * with the query workload, if one is set, as in readQueryFile.
+     * @param queryFile path to the query file
+     * @param numQueries maximum number of queries to read
+     * @return the queries
+     * @throws IOException
+     */
+    public static QueryCorpus readQueryCorpus(String queryFile, int numQueries) throws IOException {
+        return readQueryCorpus(queryFile, numQueries, queryWorkload);
+    }
+
+    /**
+     * Reads queries as in readQueryCorpus, sampled with the given workload instead of the query
+     * workload.
+     * @param queryFile path to the query file
+     * @param numQueries maximum number of queries to read
+     * @param queryWorkload distribution to sample queries with; null reads them in file order
+     * @return the queries
+     * @throws IOException
+     */
+    public static QueryCorpus readQueryCorpus(String queryFile, int numQueries, Workload queryWorkload)
+        throws IOException {
+        if(!QueryCorpus.isCorpus(queryFile)) {
+            String[] queries = readQueryFile(queryFile, numQueries, queryWorkload);
+            byte[][] queryBytes = new byte[queries.length][];
+            for(int i = 0; i < queries.length; i++) {
+                queryBytes[i] = queries[i].getBytes();
+            }
+            return QueryCorpus.fromPatterns(queryBytes, null);
+        }
+
+        QueryCorpus corpus = QueryCorpus.open(queryFile);
+        if(queryWorkload != null) {
+            return corpus.select(queryWorkload.generate(numQueries, corpus.size()));
+        }
+        if(corpus.size() < numQueries) {
+            System.err.println("[WARNING] Number of queries is less then " + numQueries);
+        }
+        return corpus.head(numQueries);
+    }
+
+    /**
+     * Reads queries as in readQueryCorpus and copies them out once up front, so that benchmark
+     * loops neither encode strings nor allocate to get at a query.
+     * @param queryFile path to the query file
+     * @param numQueries maximum number of queries to read
+     * @return encoded queries
+     * @throws IOException
+     */
+    public static byte[][] readQueryBytes(String queryFile, int numQueries) throws IOException {
+        return readQueryCorpus(queryFile, numQueries).toByteArrays();
+    }
+
+    /**
+     * Compares counts with the expected counts stored in a query corpus, if it has any, and
+     * prints how many differ.
+     * @param corpus the queries that were counted
+     * @param counts count of each query
+     */
+    public static void checkExpectedCounts(QueryCorpus corpus, long[] counts) {
+        if(!corpus.hasExpectedCounts()) {
+            return;
+        }
+        int mismatches = 0;
+        for(int i = 0; i < counts.length; i++) {
+            if(counts[i] != corpus.getExpectedCount(i)) {
+                if(mismatches == 0) {
+                    System.out.println("WARNING: query " + i + " counts " + counts[i] + " matches; the corpus expects "
+                        + corpus.getExpectedCount(i));
+                }
+                mismatches++;
+            }
+        }
+        System.out.println("Checked counts against the query corpus: " + mismatches + " of " + counts.length
+            + " differ");
+    }
+
+    /**
+     * Splits queries into consecutive batches; the last batch may be smaller.
+     * @param queries queries to split
+     * @param batchSize maximum number of queries per batch
+     * @return the batches
+     */
+    public static byte[][][] splitBatches(byte[][] queries, int batchSize) {
+        int numBatches = (queries.length + batchSize - 1) / batchSize;
+        byte[][][] batches = new byte[numBatches][][];
+        for(int b = 0; b < numBatches; b++) {
+            batches[b] = Arrays.copyOfRange(queries, b * batchSize, Math.min(queries.length, (b + 1) * batchSize));
+        }
+        return batches;
+    }
+
+    /**
+     * Parses a thread-count specification: a single count ("8"), a comma-separated list
+     * ("1,2,4,8") or a doubling range ("1..32", "1..max"), where max is the number of
+     * available processors. Ranges always include their upper bound.
+     * @param spec thread-count specification
+     * @return thread counts, in the order given
+     */
+    public static int[] parseThreadLevels(String spec) {
+        ArrayList<Integer> levels = new ArrayList<Integer>();
+        for(String part: spec.split(",")) {
+            part = part.trim();
+            int sep = part.indexOf("..");
+            if(sep < 0) {
+                levels.add(parseThreadCount(part));
+            } else {
+                int lo = parseThreadCount(part.substring(0, sep));
+                int hi = parseThreadCount(part.substring(sep + 2));
+                for(int n = lo; n < hi; n *= 2) {
+                    levels.add(n);
+                }
+                levels.add(hi);
+            }
+        }
+        int[] result = new int[levels.size()];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = levels.get(i);
+        }
+        return result;
+    }
+
+    private static int parseThreadCount(String s) {
+        int n = s.trim().equals("max") ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(s.trim());
+        if(n <= 0) {
+            throw new IllegalArgumentException("Invalid thread count: " + s);
+        }
+        return n;
+    }
+
+    /**
+     * Parses a comma-separated list of byte sizes with optional k/m/g suffixes (e.g. "64m,1g").
+     * @param spec size specification
+     * @return sizes in bytes
+     */
+    public static long[] parseByteSizes(String spec) {
+        String[] parts = spec.split(",");
+        long[] sizes = new long[parts.length];
+        for(int i = 0; i < parts.length; i++) {
+            sizes[i] = parseByteSize(parts[i]);
+        }
+        return sizes;
+    }
+
+    public static long parseByteSize(String s) {
+        s = s.trim().toLowerCase();
+        long multiplier = 1;
+        if(s.endsWith("k")) {
+            multiplier = 1L << 10;
+        } else if(s.endsWith("m")) {
+            multiplier = 1L << 20;
+        } else if(s.endsWith("g")) {
+            multiplier = 1L << 30;
+        }
+        if(multiplier != 1) {
+            s = s.substring(0, s.length() - 1);
+        }
+        return (long) (Double.parseDouble(s) * multiplier);
+    }
+
     public static Configuration getConf() {
         Configuration conf = new Configuration();
         String confDir = System.getenv("HADOOP_CONF_DIR");
@@ -0,0 +1,141 @@
+package edu.berkeley.cs.succinct.perf;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a fixed number of concurrent in-flight requests through one of several execution
+ * models, to compare how each behaves at high concurrency on the same dataset:
+ * <ul>
+ *   <li>FIXED_POOL: requests queue for a fixed pool of platform threads</li>
+ *   <li>VIRTUAL: every request runs on its own virtual thread</li>
+ *   <li>ASYNC: requests are CompletableFutures completed on a fixed pool of platform threads</li>
+ * </ul>
+ * A single submitter keeps the target number of requests in flight. Latency is measured from
+ * submission to completion, so it includes time spent waiting for a carrier or pool thread.
+ */
+public class ConcurrencyDriver {
+
+    public enum ExecutionMode {
+        FIXED_POOL,
+        VIRTUAL,
+        ASYNC
+    }
+
+    private final ExecutionMode mode;
+    private final int concurrency;
+    private final int poolThreads;
+
+    /**
+     * @param mode execution model
+     * @param concurrency number of requests kept in flight
+     * @param poolThreads number of platform threads for the FIXED_POOL and ASYNC modes
+     */
+    public ConcurrencyDriver(ExecutionMode mode, int concurrency, int poolThreads) {
+        if (concurrency <= 0 || poolThreads <= 0) {
+            throw new IllegalArgumentException("Concurrency and pool size must be positive");
+        }
+        this.mode = mode;
+        this.concurrency = concurrency;
+        this.poolThreads = poolThreads;
+    }
+
+    /**
+     * Runs op with the configured concurrency, cycling through numQueries query indices.
+     * @param name name of the operation, used in the report
+     * @param op operation to run
+     * @param numQueries number of distinct query indices
+     * @param warmupSecs seconds of load whose latencies are discarded
+     * @param measurementSecs seconds of load whose latencies and completions are recorded
+     * @param resPath path prefix for the latency distribution
+     * @throws InterruptedException
+     * @throws FileNotFoundException
+     */
+    public void run(String name, BenchmarkOp op, int numQueries, int warmupSecs, int measurementSecs,
+        String resPath) throws InterruptedException, FileNotFoundException {
+
+        System.out.println("Running " + name + " with " + concurrency + " requests in flight (" + mode
+            + (mode == ExecutionMode.VIRTUAL ? "" : ", " + poolThreads + " threads") + ")...");
+
+        LatencyRecorder latency = new LatencyRecorder(name + " (" + mode + ", concurrency " + concurrency + ")");
+        Semaphore inFlight = new Semaphore(concurrency);
+        LongAdder completed = new LongAdder();
+        LongAdder checksum = new LongAdder();
+        LongAdder failures = new LongAdder();
+
+        ExecutorService executor = mode == ExecutionMode.VIRTUAL
+            ? Executors.newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(poolThreads);
+
+        long start = System.nanoTime();
+        long measurementStart = start + TimeUnit.SECONDS.toNanos(warmupSecs);
+        long end = measurementStart + TimeUnit.SECONDS.toNanos(measurementSecs);
+
+        int i = 0;
+        long submitted;
+        while ((submitted = System.nanoTime()) < end) {
+            inFlight.acquire();
+            int query = i;
+            long submitTime = submitted;
+            boolean measured = submitTime >= measurementStart;
+            i = (i + 1 == numQueries) ? 0 : i + 1;
+
+            if (mode == ExecutionMode.ASYNC) {
+                CompletableFuture.supplyAsync(() -> op.execute(query), executor).whenComplete((result, error) -> {
+                    try {
+                        complete(result, error, submitTime, measured, latency, completed, checksum, failures);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } else {
+                executor.execute(() -> {
+                    Long result = null;
+                    Throwable error = null;
+                    try {
+                        result = op.execute(query);
+                    } catch (Throwable e) {
+                        error = e;
+                    }
+                    // Always give the slot back, or draining the in-flight requests below never ends
+                    try {
+                        complete(result, error, submitTime, measured, latency, completed, checksum, failures);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+
+        // Drain the requests that are still in flight
+        inFlight.acquire(concurrency);
+        long measuredNanos = System.nanoTime() - measurementStart;
+        executor.shutdown();
+
+        System.out.println("Checksum = " + checksum.sum());
+        if (failures.sum() > 0) {
+            System.out.println("[WARNING] " + failures.sum() + " requests failed");
+        }
+        System.out.println(name + " queries completed per second: " + completed.sum() / (measuredNanos / 1e9));
+        latency.report(resPath);
+    }
+
+    private static void complete(Long result, Throwable error, long submitTime, boolean measured,
+        LatencyRecorder latency, LongAdder completed, LongAdder checksum, LongAdder failures) {
+        long now = System.nanoTime();
+        if (error != null) {
+            failures.increment();
+            return;
+        }
+        if (measured) {
+            latency.record(now - submitTime);
+            completed.increment();
+        }
+        checksum.add(result);
+    }
+}
@@ -0,0 +1,257 @@
+package edu.berkeley.cs.succinct.perf;
+
+import edu.berkeley.cs.succinct.perf.buffers.SuccinctIndexedBuffer;
+import edu.berkeley.cs.succinct.perf.workload.Workload;
+import org.apache.commons.cli.*;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Benchmarks Succinct as a key-value store: point gets, multi-gets and record search over a
+ * SuccinctIndexedBuffer built from a file of delimited records, whose keys are record indices.
+ *
+ * The input may be on any Hadoop file system (e.g. file:// or hdfs://). KVBench runs on its
+ * own threads and uses no Spark APIs, so it runs unchanged under spark-submit (as bin/kv-bench
+ * does, in local[*] mode by default) or with plain java.
+ */
+public class KVBench {
+
+    private static final int WARMUP_QUERIES = 10000;
+    private static final int MAX_QUERIES = 100000;
+
+    private static final int WARMUP_TIME = 10; // seconds
+    private static final int MEASUREMENT_TIME = 30; // seconds
+    private static final int COOLDOWN_TIME = 5; // seconds
+
+    private final SuccinctIndexedBuffer store;
+
+    public KVBench(SuccinctIndexedBuffer store) {
+        this.store = store;
+    }
+
+    /**
+     * Reads a file of delimited records and builds the store over it.
+     * @param dataPath path or URI of the input
+     * @param delimiter record delimiter
+     * @return the benchmark
+     * @throws IOException
+     */
+    public static KVBench load(String dataPath, byte delimiter) throws IOException {
+        Path path = new Path(dataPath);
+        FileSystem fs = path.getFileSystem(BenchmarkUtils.getConf());
+        long size = fs.getFileStatus(path).getLen();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Input is " + size + " bytes; a single Succinct buffer holds at most "
+                + Integer.MAX_VALUE + " bytes");
+        }
+        byte[] data = new byte[(int) size];
+        try (FSDataInputStream in = fs.open(path)) {
+            in.readFully(0, data);
+        }
+
+        long start = System.nanoTime();
+        SuccinctIndexedBuffer store = SuccinctIndexedBuffer.build(data, delimiter);
+        long elapsed = System.nanoTime() - start;
+        System.out.println("Built store of " + store.getNumRecords() + " records (" + size + " bytes) in "
+            + elapsed / 1000000 + " ms");
+        return new KVBench(store);
+    }
+
+    public void benchGetLatency(String resPath, Workload workload) throws IOException {
+        System.out.println("Benchmarking get latency (" + workload + " keys)...");
+
+        final long[] keys = workload.generate(MAX_QUERIES, store.getNumRecords());
+        benchLatency("get " + workload, new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return store.get((int) keys[i]).length;
+            }
+        }, keys.length, resPath);
+    }
+
+    public void benchMultiGetLatency(String resPath, Workload workload, int batchSize) throws IOException {
+        System.out.println("Benchmarking multi-get latency (" + batchSize + " " + workload + " keys per batch)...");
+
+        final int[][] batches = generateBatches(workload, MAX_QUERIES / batchSize, batchSize);
+        benchLatency("multi-get " + workload + " (per batch)", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return store.multiGet(batches[i]).length;
+            }
+        }, batches.length, resPath);
+    }
+
+    public void benchSearchLatency(String queryFile, String resPath) throws IOException {
+        System.out.println("Benchmarking record search latency...");
+
+        final byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        benchLatency("search", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return store.search(queries[i]).length;
+            }
+        }, queries.length, resPath);
+    }
+
+    public double benchGetThroughput(String resPath, Workload workload, int numThreads) throws IOException,
+        InterruptedException, ExecutionException {
+
+        System.out.println("Benchmarking get throughput (" + workload + " keys) with " + numThreads + " threads...");
+        final long[] keys = workload.generate(MAX_QUERIES, store.getNumRecords());
+        return benchThroughput("get", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return store.get((int) keys[i]).length;
+            }
+        }, keys.length, numThreads, resPath);
+    }
+
+    public double benchMultiGetThroughput(String resPath, Workload workload, int batchSize, int numThreads)
+        throws IOException, InterruptedException, ExecutionException {
+
+        System.out.println("Benchmarking multi-get throughput (" + batchSize + " " + workload
+            + " keys per batch) with " + numThreads + " threads...");
+        final int[][] batches = generateBatches(workload, MAX_QUERIES / batchSize, batchSize);
+        return benchThroughput("multi-get", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return store.multiGet(batches[i]).length;
+            }
+        }, batches.length, numThreads, resPath);
+    }
+
+    public double benchSearchThroughput(String queryFile, String resPath, int numThreads) throws IOException,
+        InterruptedException, ExecutionException {
+
+        System.out.println("Benchmarking record search throughput with " + numThreads + " threads...");
+        final byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        return benchThroughput("search", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return store.search(queries[i]).length;
+            }
+        }, queries.length, numThreads, resPath);
+    }
+
+    private int[][] generateBatches(Workload workload, int numBatches, int batchSize) {
+        long[] keys = workload.generate(Math.max(1, numBatches) * batchSize, store.getNumRecords());
+        int[][] batches = new int[Math.max(1, numBatches)][batchSize];
+        for (int i = 0; i < keys.length; i++) {
+            batches[i / batchSize][i % batchSize] = (int) keys[i];
+        }
+        return batches;
+    }
+
+    private void benchLatency(String name, BenchmarkOp op, int numQueries, String resPath) throws IOException {
+        LatencyRecorder recorder = new LatencyRecorder(name);
+        long[] values = new long[numQueries];
+        long[] latencies = new long[numQueries];
+
+        long sum = 0;
+        for (int i = 0; i < Math.min(numQueries, WARMUP_QUERIES); i++) {
+            sum += op.execute(i);
+        }
+
+        System.out.println("Warmup complete: Checksum = " + sum);
+
+        for (int i = 0; i < numQueries; i++) {
+            long start = System.nanoTime();
+            values[i] = op.execute(i);
+            long end = System.nanoTime();
+            latencies[i] = end - start;
+            recorder.record(end - start);
+        }
+
+        recorder.report(resPath);
+        BenchmarkUtils.writeResults(resPath, values, latencies);
+    }
+
+    private double benchThroughput(String name, BenchmarkOp op, int numQueries, int numThreads, String resPath)
+        throws IOException, InterruptedException, ExecutionException {
+
+        ThroughputEngine.Result result = new ThroughputEngine(numThreads, WARMUP_TIME, MEASUREMENT_TIME, COOLDOWN_TIME)
+            .run(name, op, numQueries);
+        System.out.println(name + " operations executed per second: " + result.getQps());
+        result.writeTimeSeries(resPath);
+        return result.getQps();
+    }
+
+    // Main class
+    public static void main(String[] args) {
+        CommandLineParser parser = new DefaultParser();
+        Options options = new Options();
+        options.addOption("r", true, "Prefix of the paths where the results will be stored (default results/kv)");
+        options.addOption("q", true, "Path to query file for record search benchmarks; search is skipped without one");
+        options.addOption("n", true, "Number of threads for throughput benchmarks: a count, a list (e.g. 1,2,4,8)"
+            + " or a doubling range (e.g. 1..max). Default 1..max.");
+        options.addOption("k", true, "Number of keys per multi-get (default 10)");
+        options.addOption("z", true, "Skew (theta) of Zipfian key gets (default 0.99)");
+        options.addOption("delim", true, "Record delimiter, as a character or a decimal byte value (default newline)");
+        HelpFormatter formatter = new HelpFormatter();
+
+        try {
+            CommandLine line = parser.parse(options, args);
+            if (line.getArgs().length != 1) {
+                System.out.println("Path to the input data must be specified.");
+                formatter.printHelp("kv-bench <data path>", options);
+                System.exit(0);
+            }
+
+            String dataPath = line.getArgs()[0];
+            String resPath = line.getOptionValue("r");
+            if (resPath == null) {
+                System.out.println("Result path not specified; results will be stored in results/");
+                new File("results").mkdirs();
+                resPath = "results/kv";
+            }
+            int[] threadLevels = BenchmarkUtils.parseThreadLevels(line.getOptionValue("n", "1..max"));
+            int batchSize = Integer.parseInt(line.getOptionValue("k", "10"));
+            Workload uniform = Workload.UNIFORM;
+            Workload zipfian = Workload.parse("zipfian:" + line.getOptionValue("z", "0.99"));
+            String queryFile = line.getOptionValue("q");
+            String delim = line.getOptionValue("delim", "\n");
+            byte delimiter = delim.length() == 1 ? (byte) delim.charAt(0) : (byte) Integer.parseInt(delim);
+
+            KVBench bench = KVBench.load(dataPath, delimiter);
+
+            bench.benchGetLatency(resPath + "_get_uniform", uniform);
+            bench.benchGetLatency(resPath + "_get_zipfian", zipfian);
+            bench.benchMultiGetLatency(resPath + "_multiget", uniform, batchSize);
+            if (queryFile != null) {
+                bench.benchSearchLatency(queryFile, resPath + "_search");
+            }
+
+            BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath + "_throughput.csv"));
+            bufferedWriter.write("operation,threads,ops_per_s\n");
+            for (int numThreads : threadLevels) {
+                String suffix = "_n" + numThreads;
+                bufferedWriter.write("get_uniform," + numThreads + ","
+                    + bench.benchGetThroughput(resPath + "_get_uniform_thput" + suffix, uniform, numThreads) + "\n");
+                bufferedWriter.write("get_zipfian," + numThreads + ","
+                    + bench.benchGetThroughput(resPath + "_get_zipfian_thput" + suffix, zipfian, numThreads) + "\n");
+                bufferedWriter.write("multiget," + numThreads + "," + bench.benchMultiGetThroughput(
+                    resPath + "_multiget_thput" + suffix, uniform, batchSize, numThreads) + "\n");
+                if (queryFile != null) {
+                    bufferedWriter.write("search," + numThreads + ","
+                        + bench.benchSearchThroughput(queryFile, resPath + "_search_thput" + suffix, numThreads) + "\n");
+                }
+                bufferedWriter.flush();
+            }
+            bufferedWriter.close();
+        } catch (ParseException exception) {
+            System.out.println("Could not parse command line options: " + exception.getMessage());
+            formatter.printHelp("kv-bench <data path>", options);
+            System.exit(0);
+        } catch (IOException | ExecutionException | InterruptedException e) {
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+}
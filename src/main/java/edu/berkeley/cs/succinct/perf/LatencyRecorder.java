@@ -0,0 +1,116 @@
+package edu.berkeley.cs.succinct.perf;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records per-operation latencies into a preallocated HdrHistogram.
+ *
+ * Recording is wait-free and does not allocate, so it is safe to call from inside a
+ * measurement loop and from several threads at once. Latencies above the trackable range
+ * are clamped to the highest trackable value rather than dropped.
+ */
+public class LatencyRecorder {
+    private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toNanos(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9, 99.99};
+
+    private final String name;
+    private final Recorder recorder;
+    private final Histogram aggregate;
+    private Histogram interval;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+        this.recorder = new Recorder(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+        this.aggregate = new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * Records a single latency.
+     * @param latencyNanos latency in nanoseconds
+     */
+    public void record(long latencyNanos) {
+        if (latencyNanos > HIGHEST_TRACKABLE_LATENCY) {
+            latencyNanos = HIGHEST_TRACKABLE_LATENCY;
+        } else if (latencyNanos < 0) {
+            latencyNanos = 0;
+        }
+        recorder.recordValue(latencyNanos);
+    }
+
+    /**
+     * Gets the histogram of all latencies recorded so far. Must not be called concurrently
+     * with itself or {@link #reset()}, but may be called while other threads record.
+     * @return the aggregate histogram
+     */
+    public synchronized Histogram getHistogram() {
+        interval = recorder.getIntervalHistogram(interval);
+        aggregate.add(interval);
+        return aggregate;
+    }
+
+    /**
+     * Discards all latencies recorded so far (e.g. at the end of warmup).
+     */
+    public synchronized void reset() {
+        interval = recorder.getIntervalHistogram(interval);
+        aggregate.reset();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Formats mean and tail percentiles of the recorded latencies on a single line.
+     * @return the summary line
+     */
+    public String summary() {
+        Histogram histogram = getHistogram();
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append(" latency (ns): n=").append(histogram.getTotalCount());
+        sb.append(String.format(" mean=%.1f", histogram.getMean()));
+        for (double p : PERCENTILES) {
+            sb.append(" p").append(formatPercentile(p)).append("=").append(histogram.getValueAtPercentile(p));
+        }
+        sb.append(" max=").append(histogram.getMaxValue());
+        return sb.toString();
+    }
+
+    /**
+     * Prints the summary to stdout.
+     */
+    public void printSummary() {
+        System.out.println(summary());
+    }
+
+    /**
+     * Writes the full percentile distribution (in HdrHistogram's .hgrm format) to a file.
+     * @param path output path
+     * @throws FileNotFoundException
+     */
+    public void writePercentileDistribution(String path) throws FileNotFoundException {
+        PrintStream out = new PrintStream(path);
+        getHistogram().outputPercentileDistribution(out, 1.0);
+        out.close();
+    }
+
+    /**
+     * Prints the summary and writes the percentile distribution next to the raw results.
+     * @param resPath path of the raw results; the distribution goes to resPath.hgrm
+     * @throws FileNotFoundException
+     */
+    public void report(String resPath) throws FileNotFoundException {
+        printSummary();
+        writePercentileDistribution(resPath + ".hgrm");
+    }
+
+    private static String formatPercentile(double p) {
+        return p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p);
+    }
+}
@@ -0,0 +1,74 @@
+package edu.berkeley.cs.succinct.perf;
+
+import edu.berkeley.cs.succinct.StorageMode;
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+import edu.berkeley.cs.succinct.perf.storage.ParallelFileLoader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compares the library's single-threaded MEMORY_ONLY load of a serialized SuccinctFileBuffer
+ * with a ParallelFileLoader read at increasing thread counts. Each parallel load is checked
+ * against the single-threaded one on a sample of lookupSA and extract queries.
+ *
+ * Loads after the first may be served from the OS page cache; drop it between runs (or use a
+ * file larger than memory) to measure the storage device.
+ */
+public class LoadBench {
+
+    private static final int CHECK_QUERIES = 1000;
+    private static final int CHECK_EXTRACT_LENGTH = 100;
+
+    private final String dataPath;
+
+    public LoadBench(String dataPath) {
+        this.dataPath = dataPath;
+    }
+
+    public void benchLoad(String resPath, int[] threadLevels) throws IOException {
+        System.out.println("Benchmarking parallel load...");
+
+        long start = System.nanoTime();
+        SuccinctFileBuffer reference = new SuccinctFileBuffer(dataPath, StorageMode.MEMORY_ONLY);
+        long sequentialNanos = System.nanoTime() - start;
+        long size = new File(dataPath).length();
+        System.out.println("sequential (MEMORY_ONLY): " + sequentialNanos / 1000000 + " ms, "
+            + gbPerSec(size, sequentialNanos) + " GB/s");
+
+        long[] randoms = BenchmarkUtils.generateRandoms(CHECK_QUERIES, reference.getOriginalSize() - CHECK_EXTRACT_LENGTH);
+
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        bufferedWriter.write("threads,read_ms,build_ms,gb_per_s\n");
+        bufferedWriter.write("sequential," + sequentialNanos / 1e6 + ",0," + gbPerSec(size, sequentialNanos) + "\n");
+        for (int numThreads : threadLevels) {
+            start = System.nanoTime();
+            SegmentedBuffer data = ParallelFileLoader.load(dataPath, numThreads);
+            long readNanos = System.nanoTime() - start;
+            SuccinctFileBuffer buffer = new SuccinctFileBuffer(data.asByteBuffer());
+            long totalNanos = System.nanoTime() - start;
+
+            for (long i : randoms) {
+                if (buffer.lookupSA(i) != reference.lookupSA(i)
+                    || !Arrays.equals(buffer.extract(i, CHECK_EXTRACT_LENGTH),
+                        reference.extract(i, CHECK_EXTRACT_LENGTH))) {
+                    throw new IOException("Buffer loaded with " + numThreads + " threads differs from the"
+                        + " MEMORY_ONLY load at offset " + i);
+                }
+            }
+
+            System.out.println(numThreads + " threads: read " + readNanos / 1000000 + " ms, build "
+                + (totalNanos - readNanos) / 1000000 + " ms, " + gbPerSec(size, totalNanos) + " GB/s");
+            bufferedWriter.write(numThreads + "," + readNanos / 1e6 + "," + (totalNanos - readNanos) / 1e6 + ","
+                + gbPerSec(size, totalNanos) + "\n");
+        }
+        bufferedWriter.close();
+    }
+
+    private static double gbPerSec(long bytes, long nanos) {
+        return (bytes / (1024.0 * 1024.0 * 1024.0)) / (nanos / 1e9);
+    }
+}
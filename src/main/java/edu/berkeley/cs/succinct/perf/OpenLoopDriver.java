@@ -0,0 +1,207 @@
+package edu.berkeley.cs.succinct.perf;
+
+import java.io.FileNotFoundException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator: issues requests at a fixed offered rate regardless of how fast
+ * earlier requests complete.
+ *
+ * Workers in a fixed pool claim the next scheduled request, wait until its intended start
+ * time and run it; if all workers are busy, requests queue up behind the schedule. Arrivals
+ * are generated as they are claimed, so the schedule is never held in memory. Latency is measured from the intended start
+ * time, so queueing delay is included and the results do not suffer from coordinated omission.
+ */
+public class OpenLoopDriver {
+
+    public enum ArrivalProcess {
+        CONSTANT,
+        POISSON
+    }
+
+    private static final long SPIN_THRESHOLD = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int numWorkers;
+    private final double targetQps;
+    private final ArrivalProcess arrivalProcess;
+
+    public OpenLoopDriver(int numWorkers, double targetQps, ArrivalProcess arrivalProcess) {
+        if (numWorkers <= 0 || targetQps <= 0) {
+            throw new IllegalArgumentException("Number of workers and target QPS must be positive");
+        }
+        this.numWorkers = numWorkers;
+        this.targetQps = targetQps;
+        this.arrivalProcess = arrivalProcess;
+    }
+
+    /**
+     * Runs op at the target rate, cycling through numQueries query indices.
+     * @param name name of the operation, used in the report
+     * @param op operation to run
+     * @param numQueries number of distinct query indices
+     * @param warmupSecs seconds of load whose latencies are discarded
+     * @param measurementSecs seconds of load whose latencies are recorded
+     * @param resPath path prefix for the latency distributions
+     * @throws InterruptedException
+     * @throws FileNotFoundException
+     */
+    public void run(String name, final BenchmarkOp op, final int numQueries, int warmupSecs, int measurementSecs,
+        String resPath) throws InterruptedException, FileNotFoundException {
+
+        final long warmupNanos = TimeUnit.SECONDS.toNanos(warmupSecs);
+        final ArrivalSchedule schedule = new ArrivalSchedule(warmupSecs + measurementSecs);
+        final LatencyRecorder latency = new LatencyRecorder(name + " (from intended start)");
+        final LatencyRecorder serviceTime = new LatencyRecorder(name + " (service time)");
+        final AtomicLong measured = new AtomicLong(0);
+        final AtomicLong checksum = new AtomicLong(0);
+        // Actual start of the first measured request and completion of the last one
+        final AtomicLong firstMeasuredStart = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLong lastMeasuredEnd = new AtomicLong(Long.MIN_VALUE);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        System.out.println("Offering " + targetQps + " " + name + " queries per second (" + arrivalProcess
+            + " arrivals) to " + numWorkers + " workers...");
+
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(numWorkers);
+        final long[] startTime = new long[1];
+
+        ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+        for (int w = 0; w < numWorkers; w++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    long sum = 0, count = 0;
+                    long firstStart = Long.MAX_VALUE, lastEnd = Long.MIN_VALUE;
+                    try {
+                        startLatch.await();
+
+                        long base = startTime[0];
+                        long[] offset = new long[1];
+                        long ticket;
+                        while ((ticket = schedule.claim(offset)) >= 0) {
+                            long intended = base + offset[0];
+                            waitUntil(intended);
+
+                            long start = System.nanoTime();
+                            sum += op.execute((int) (ticket % numQueries));
+                            long end = System.nanoTime();
+
+                            if (offset[0] >= warmupNanos) {
+                                latency.record(end - intended);
+                                serviceTime.record(end - start);
+                                count++;
+                                firstStart = Math.min(firstStart, start);
+                                lastEnd = Math.max(lastEnd, end);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Throwable e) {
+                        // Stop the other workers too; the failure is rethrown once all have finished
+                        failure.compareAndSet(null, e);
+                        schedule.cancel();
+                    } finally {
+                        measured.addAndGet(count);
+                        firstMeasuredStart.accumulateAndGet(firstStart, Math::min);
+                        lastMeasuredEnd.accumulateAndGet(lastEnd, Math::max);
+                        checksum.addAndGet(sum);
+                        doneLatch.countDown();
+                    }
+                }
+            });
+        }
+
+        startTime[0] = System.nanoTime();
+        startLatch.countDown();
+        doneLatch.await();
+        long elapsed = System.nanoTime() - startTime[0];
+        executor.shutdown();
+
+        Throwable error = failure.get();
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        } else if (error != null) {
+            throw new RuntimeException(name + " query failed", error);
+        }
+
+        // Measured requests over the time it actually took to run them: once the system falls
+        // behind schedule, they finish after the measurement window and the achieved rate drops
+        // below the offered load
+        long measuredNanos = lastMeasuredEnd.get() - firstMeasuredStart.get();
+        double achievedQps = measured.get() > 0 && measuredNanos > 0 ? measured.get() / (measuredNanos / 1e9) : 0;
+        double lagSecs = Math.max(0, elapsed - schedule.lastOffset()) / 1e9;
+        System.out.println("Checksum = " + checksum.get());
+        System.out.println("Offered load: " + targetQps + " qps; achieved: " + achievedQps
+            + " qps; finished " + lagSecs + " s behind schedule");
+        latency.report(resPath + "_latency");
+        serviceTime.report(resPath + "_service");
+    }
+
+    /**
+     * Arrival times, generated one at a time as workers claim them.
+     */
+    private final class ArrivalSchedule {
+        private final double intervalNanos = 1e9 / targetQps;
+        private final Random rand = new Random();
+        private long numRequests;
+        private long nextTicket = 0;
+        private double t = 0.0;
+        private long lastOffset = 0;
+
+        ArrivalSchedule(int durationSecs) {
+            this.numRequests = (long) Math.ceil(targetQps * durationSecs);
+        }
+
+        /**
+         * Claims the next arrival.
+         * @param offset receives the arrival's intended start, in nanoseconds from the start of the run
+         * @return the arrival's ticket, or -1 once the schedule is exhausted
+         */
+        synchronized long claim(long[] offset) {
+            if (nextTicket >= numRequests) {
+                return -1;
+            }
+            lastOffset = (long) t;
+            offset[0] = lastOffset;
+            if (arrivalProcess == ArrivalProcess.POISSON) {
+                t += -Math.log(1.0 - rand.nextDouble()) * intervalNanos;
+            } else {
+                t += intervalNanos;
+            }
+            return nextTicket++;
+        }
+
+        /**
+         * Ends the schedule early; arrivals already claimed still run.
+         */
+        synchronized void cancel() {
+            numRequests = nextTicket;
+        }
+
+        /**
+         * @return intended start of the last arrival handed out
+         */
+        synchronized long lastOffset() {
+            return lastOffset;
+        }
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_THRESHOLD) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+            }
+        }
+    }
+}
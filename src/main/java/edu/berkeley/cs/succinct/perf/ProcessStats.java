@@ -0,0 +1,185 @@
+package edu.berkeley.cs.succinct.perf;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Process-level memory and page-fault statistics read from /proc/self (Linux only). On other
+ * platforms the values are reported as -1.
+ */
+public class ProcessStats {
+
+    private static final String STATUS_PATH = "/proc/self/status";
+    private static final String STAT_PATH = "/proc/self/stat";
+    // Fields of /proc/self/stat, counted from the state field that follows the command name
+    private static final int MINOR_FAULTS_FIELD = 7;
+    private static final int MAJOR_FAULTS_FIELD = 9;
+    private static final String CLEAR_REFS_PATH = "/proc/self/clear_refs";
+
+    /**
+     * @return current resident set size in bytes, or -1 if unavailable
+     */
+    public static long rssBytes() {
+        return readStatusBytes("VmRSS:");
+    }
+
+    /**
+     * @return peak resident set size (high water mark) in bytes, or -1 if unavailable
+     */
+    public static long peakRssBytes() {
+        return readStatusBytes("VmHWM:");
+    }
+
+    /**
+     * @return number of minor page faults (served without I/O) so far, or -1 if unavailable
+     */
+    public static long minorFaults() {
+        return readStatField(MINOR_FAULTS_FIELD);
+    }
+
+    /**
+     * @return number of major page faults (that required I/O) so far, or -1 if unavailable
+     */
+    public static long majorFaults() {
+        return readStatField(MAJOR_FAULTS_FIELD);
+    }
+
+    /**
+     * Resets the peak resident set size to the current one, so that a subsequent
+     * peakRssBytes() measures only what happens in between. Requires Linux 4.0+.
+     * @return true if the reset succeeded
+     */
+    public static boolean resetPeakRss() {
+        try (FileOutputStream out = new FileOutputStream(CLEAR_REFS_PATH)) {
+            out.write('5');
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return bytes currently used on the Java heap
+     */
+    public static long heapUsedBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Resets the peak usage of every heap memory pool, so that a subsequent peakHeapBytes()
+     * measures only what happens in between.
+     */
+    public static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return sum of the peak usage of the heap memory pools. The pools may peak at different
+     * times, so this is an upper bound on the peak heap usage.
+     */
+    public static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * @return bytes allocated on the heap by the current thread so far, or -1 if the JVM does
+     * not track it
+     */
+    public static long threadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of garbage collections so far, over all collectors
+     */
+    public static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * @return approximate time spent in garbage collection so far, in milliseconds, over all
+     * collectors
+     */
+    public static long gcTimeMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    public static String formatMB(long bytes) {
+        return bytes < 0 ? "n/a" : String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Prints the time, throughput and memory footprint of loading a dataset.
+     * @param bytes number of bytes loaded
+     * @param elapsedNanos time taken to load them
+     * @param heapBefore heapUsedBytes() before the load
+     * @param peakReset whether resetPeakRss() succeeded before the load
+     */
+    public static void printLoadStats(long bytes, long elapsedNanos, long heapBefore, boolean peakReset) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println("Loaded " + bytes + " bytes in " + elapsedNanos / 1000000 + " ms ("
+            + String.format("%.1f", bytes / (1024.0 * 1024.0) / seconds) + " MB/s)");
+        System.out.println("RSS = " + formatMB(rssBytes())
+            + ", peak RSS" + (peakReset ? " during load" : "") + " = " + formatMB(peakRssBytes())
+            + ", heap growth = " + formatMB(Math.max(0, heapUsedBytes() - heapBefore)));
+    }
+
+    private static long readStatField(int field) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(STAT_PATH))) {
+            String line = reader.readLine();
+            // The command name is in parentheses and may itself contain spaces
+            String[] fields = line.substring(line.lastIndexOf(')') + 2).split(" ");
+            return Long.parseLong(fields[field]);
+        } catch (IOException | RuntimeException e) {
+            // Not on Linux
+        }
+        return -1;
+    }
+
+    private static long readStatusBytes(String field) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(STATUS_PATH))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(field)) {
+                    String[] parts = line.substring(field.length()).trim().split("\\s+");
+                    return Long.parseLong(parts[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux, or the field is missing
+        }
+        return -1;
+    }
+}
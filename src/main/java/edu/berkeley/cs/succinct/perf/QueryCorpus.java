@@ -0,0 +1,243 @@
+package edu.berkeley.cs.succinct.perf;
+
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Query patterns pre-encoded in a compact binary format, so that benchmarks neither decode
+ * text nor encode strings when they load queries, and query loops index into bytes that are
+ * ready to use.
+ *
+ * A corpus file is a header (the magic "SQC1", a flags word and the number of queries, as
+ * big-endian ints) followed by one record per query: the pattern length as an int, the pattern
+ * bytes and, if the HAS_COUNTS flag is set, the expected number of matches as a long. Corpus
+ * files are generated once from text query files (see generate()) and memory-mapped when
+ * opened; slice() serves patterns as zero-copy views of the mapping.
+ */
+public class QueryCorpus {
+
+    private static final int MAGIC = 0x53514331; // "SQC1"
+    private static final int HAS_COUNTS = 1;
+    private static final int HEADER_SIZE = 12;
+
+    private final ByteBuffer arena;
+    // Position of each pattern's bytes in the arena, and its length
+    private final int[] offsets;
+    private final int[] lengths;
+    private final long[] expectedCounts;
+
+    private QueryCorpus(ByteBuffer arena, int[] offsets, int[] lengths, long[] expectedCounts) {
+        this.arena = arena;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.expectedCounts = expectedCounts;
+    }
+
+    /**
+     * @return whether the file at path is a corpus file, rather than a text query file
+     */
+    public static boolean isCorpus(String path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(path))) {
+            return in.available() >= HEADER_SIZE && in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Memory-maps a corpus file.
+     * @param path path of the corpus file
+     * @return the corpus
+     * @throws IOException if the file cannot be read or is not a corpus file
+     */
+    public static QueryCorpus open(String path) throws IOException {
+        ByteBuffer arena;
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            if (file.length() > Integer.MAX_VALUE) {
+                throw new IOException("Query corpus " + path + " is larger than 2 GB");
+            }
+            arena = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+        return parse(arena, path);
+    }
+
+    /**
+     * Builds a corpus in memory.
+     * @param patterns query patterns
+     * @param expectedCounts expected number of matches of each pattern; may be null
+     * @return the corpus
+     */
+    public static QueryCorpus fromPatterns(byte[][] patterns, long[] expectedCounts) {
+        try {
+            return parse(encode(patterns, expectedCounts), "in-memory corpus");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Converts a text query file to a corpus file, with every query in the text file.
+     * @param queryFile path of the text query file
+     * @param corpusPath output path of the corpus file
+     * @param buffer if not null, the expected count of each query is counted in buffer and stored
+     * @return the number of queries written
+     * @throws IOException
+     */
+    public static int generate(String queryFile, String corpusPath, SuccinctFileBuffer buffer) throws IOException {
+        List<String> queries = new ArrayList<String>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(queryFile))) {
+            String query;
+            while ((query = reader.readLine()) != null) {
+                queries.add(query);
+            }
+        }
+        byte[][] patterns = new byte[queries.size()][];
+        long[] counts = buffer != null ? new long[queries.size()] : null;
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = queries.get(i).getBytes();
+            if (counts != null) {
+                counts[i] = buffer.count(patterns[i]);
+            }
+        }
+        ByteBuffer encoded = encode(patterns, counts);
+        try (FileChannel out = new RandomAccessFile(corpusPath, "rw").getChannel()) {
+            out.truncate(0);
+            while (encoded.hasRemaining()) {
+                out.write(encoded);
+            }
+        }
+        return patterns.length;
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    public boolean hasExpectedCounts() {
+        return expectedCounts != null;
+    }
+
+    /**
+     * @return expected number of matches of query i, as stored in the corpus
+     * @throws IllegalStateException if the corpus has no expected counts
+     */
+    public long getExpectedCount(int i) {
+        if (expectedCounts == null) {
+            throw new IllegalStateException("Query corpus has no expected counts");
+        }
+        return expectedCounts[i];
+    }
+
+    /**
+     * @return a zero-copy view of the bytes of query i
+     */
+    public ByteBuffer slice(int i) {
+        return arena.slice(offsets[i], lengths[i]);
+    }
+
+    /**
+     * Copies every pattern out of the arena once, for query APIs that take a byte[].
+     * @return the patterns
+     */
+    public byte[][] toByteArrays() {
+        byte[][] patterns = new byte[offsets.length][];
+        for (int i = 0; i < offsets.length; i++) {
+            patterns[i] = new byte[lengths[i]];
+            arena.get(offsets[i], patterns[i]);
+        }
+        return patterns;
+    }
+
+    /**
+     * @return a corpus of the queries at indices, in that order, sharing this corpus's arena
+     */
+    public QueryCorpus select(long[] indices) {
+        int[] selOffsets = new int[indices.length];
+        int[] selLengths = new int[indices.length];
+        long[] selCounts = expectedCounts != null ? new long[indices.length] : null;
+        for (int j = 0; j < indices.length; j++) {
+            int i = (int) indices[j];
+            selOffsets[j] = offsets[i];
+            selLengths[j] = lengths[i];
+            if (selCounts != null) {
+                selCounts[j] = expectedCounts[i];
+            }
+        }
+        return new QueryCorpus(arena, selOffsets, selLengths, selCounts);
+    }
+
+    /**
+     * @return a corpus of the first n queries, sharing this corpus's arena
+     */
+    public QueryCorpus head(int n) {
+        if (n >= offsets.length) {
+            return this;
+        }
+        return new QueryCorpus(arena, Arrays.copyOf(offsets, n), Arrays.copyOf(lengths, n),
+            expectedCounts != null ? Arrays.copyOf(expectedCounts, n) : null);
+    }
+
+    private static ByteBuffer encode(byte[][] patterns, long[] expectedCounts) {
+        long size = HEADER_SIZE;
+        for (byte[] pattern : patterns) {
+            size += 4 + pattern.length + (expectedCounts != null ? 8 : 0);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Queries take " + size + " bytes; a query corpus holds at most 2 GB");
+        }
+        ByteBuffer encoded = ByteBuffer.allocate((int) size);
+        encoded.putInt(MAGIC);
+        encoded.putInt(expectedCounts != null ? HAS_COUNTS : 0);
+        encoded.putInt(patterns.length);
+        for (int i = 0; i < patterns.length; i++) {
+            encoded.putInt(patterns[i].length);
+            encoded.put(patterns[i]);
+            if (expectedCounts != null) {
+                encoded.putLong(expectedCounts[i]);
+            }
+        }
+        encoded.flip();
+        return encoded;
+    }
+
+    private static QueryCorpus parse(ByteBuffer arena, String name) throws IOException {
+        if (arena.limit() < HEADER_SIZE || arena.getInt(0) != MAGIC) {
+            throw new IOException(name + " is not a query corpus");
+        }
+        boolean hasCounts = (arena.getInt(4) & HAS_COUNTS) != 0;
+        int numQueries = arena.getInt(8);
+        if (numQueries < 0) {
+            throw new IOException(name + " has a corrupt header");
+        }
+        int[] offsets = new int[numQueries];
+        int[] lengths = new int[numQueries];
+        long[] counts = hasCounts ? new long[numQueries] : null;
+        int recordExtra = hasCounts ? 8 : 0;
+        int pos = HEADER_SIZE;
+        for (int i = 0; i < numQueries; i++) {
+            if (pos + 4L > arena.limit()) {
+                throw new IOException(name + " is truncated at query " + i);
+            }
+            lengths[i] = arena.getInt(pos);
+            offsets[i] = pos + 4;
+            if (lengths[i] < 0 || (long) offsets[i] + lengths[i] + recordExtra > arena.limit()) {
+                throw new IOException(name + " is truncated at query " + i);
+            }
+            pos = offsets[i] + lengths[i];
+            if (hasCounts) {
+                counts[i] = arena.getLong(pos);
+                pos += 8;
+            }
+        }
+        return new QueryCorpus(arena, offsets, lengths, counts);
+    }
+}
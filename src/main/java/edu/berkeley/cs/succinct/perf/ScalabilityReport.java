@@ -0,0 +1,148 @@
+package edu.berkeley.cs.succinct.perf;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects throughput results across thread counts and fits Gunther's Universal
+ * Scalability Law to them:
+ *
+ *   X(N) = lambda * N / (1 + sigma * (N - 1) + kappa * N * (N - 1))
+ *
+ * where sigma is the contention (serialization) coefficient and kappa the coherency
+ * (crosstalk) coefficient. The fit linearizes the law as
+ * N / C(N) - 1 = sigma * (N - 1) + kappa * N * (N - 1), with C(N) = X(N) / lambda,
+ * and solves it by least squares.
+ */
+public class ScalabilityReport {
+
+    private final String name;
+    private final List<Integer> threads = new ArrayList<>();
+    private final List<Double> qps = new ArrayList<>();
+
+    private double lambda;
+    private double sigma;
+    private double kappa;
+
+    public ScalabilityReport(String name) {
+        this.name = name;
+    }
+
+    public void add(int numThreads, double throughput) {
+        threads.add(numThreads);
+        qps.add(throughput);
+    }
+
+    public void add(ThroughputEngine.Result result) {
+        add(result.getNumThreads(), result.getQps());
+    }
+
+    /**
+     * Fits the USL coefficients to the results added so far. If the sweep does not include a
+     * single-threaded run, lambda is estimated from the smallest thread count assuming linear
+     * scaling up to it.
+     */
+    public void fit() {
+        int minIdx = 0;
+        for (int i = 1; i < threads.size(); i++) {
+            if (threads.get(i) < threads.get(minIdx)) {
+                minIdx = i;
+            }
+        }
+        lambda = qps.get(minIdx) / threads.get(minIdx);
+
+        double s11 = 0, s12 = 0, s22 = 0, s1y = 0, s2y = 0;
+        for (int i = 0; i < threads.size(); i++) {
+            double n = threads.get(i);
+            if (n <= 1) {
+                continue;
+            }
+            double x1 = n - 1;
+            double x2 = n * (n - 1);
+            double y = n / (qps.get(i) / lambda) - 1;
+            s11 += x1 * x1;
+            s12 += x1 * x2;
+            s22 += x2 * x2;
+            s1y += x1 * y;
+            s2y += x2 * y;
+        }
+
+        double det = s11 * s22 - s12 * s12;
+        if (Math.abs(det) > 1e-12) {
+            sigma = (s1y * s22 - s2y * s12) / det;
+            kappa = (s11 * s2y - s12 * s1y) / det;
+        } else if (s11 > 0) {
+            // Only one distinct thread count above 1: attribute everything to contention
+            sigma = s1y / s11;
+            kappa = 0;
+        } else {
+            sigma = 0;
+            kappa = 0;
+        }
+    }
+
+    public double getSigma() {
+        return sigma;
+    }
+
+    public double getKappa() {
+        return kappa;
+    }
+
+    /**
+     * @param n number of threads
+     * @return throughput predicted by the fitted model
+     */
+    public double predict(double n) {
+        return lambda * n / (1 + sigma * (n - 1) + kappa * n * (n - 1));
+    }
+
+    /**
+     * @return thread count at which the fitted model peaks, or infinity if it never does
+     */
+    public double peakThreads() {
+        if (kappa <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.sqrt((1 - sigma) / kappa);
+    }
+
+    /**
+     * Prints a table of throughput, per-thread efficiency and fitted throughput per thread
+     * count, followed by the fitted coefficients.
+     */
+    public void print() {
+        System.out.println("Scalability of " + name + ":");
+        System.out.println(String.format("%8s %16s %12s %12s %16s", "threads", "qps", "speedup", "efficiency",
+            "usl-qps"));
+        double base = lambda;
+        for (int i = 0; i < threads.size(); i++) {
+            int n = threads.get(i);
+            double x = qps.get(i);
+            System.out.println(String.format("%8d %16.1f %12.3f %12.3f %16.1f", n, x, x / base, x / (n * base),
+                predict(n)));
+        }
+        System.out.println(String.format("USL fit: lambda=%.1f sigma=%.6f kappa=%.8f peak at N=%.1f", lambda, sigma,
+            kappa, peakThreads()));
+    }
+
+    /**
+     * Writes the table as CSV, with the fitted coefficients in a trailing comment line.
+     * @param path output path
+     * @throws IOException
+     */
+    public void writeCsv(String path) throws IOException {
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(path));
+        bufferedWriter.write("threads,qps,speedup,efficiency,usl_qps\n");
+        for (int i = 0; i < threads.size(); i++) {
+            int n = threads.get(i);
+            double x = qps.get(i);
+            bufferedWriter.write(n + "," + x + "," + (x / lambda) + "," + (x / (n * lambda)) + "," + predict(n) + "\n");
+        }
+        bufferedWriter.write("# lambda=" + lambda + ",sigma=" + sigma + ",kappa=" + kappa + "\n");
+        bufferedWriter.close();
+    }
+}
@@ -0,0 +1,184 @@
+package edu.berkeley.cs.succinct.perf;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A long-addressed byte buffer backed by a sequence of fixed-size ByteBuffer segments, so
+ * that data larger than 2 GB can be held in memory or memory-mapped.
+ */
+public class SegmentedBuffer {
+
+    public static final int DEFAULT_SEGMENT_BITS = 30; // 1 GB segments
+    // Data that fits in a single ByteBuffer is kept in one segment of up to 2 GB - 1
+    private static final int SINGLE_SEGMENT_BITS = 31;
+
+    private static final int COPY_CHUNK_SIZE = 8 << 20;
+
+    private final ByteBuffer[] segments;
+    private final int segmentBits;
+    private final long segmentMask;
+    private final long size;
+
+    public SegmentedBuffer(ByteBuffer[] segments, int segmentBits, long size) {
+        this.segments = segments;
+        this.segmentBits = segmentBits;
+        this.segmentMask = (1L << segmentBits) - 1;
+        this.size = size;
+    }
+
+    /**
+     * Allocates a zero-filled buffer.
+     * @param size size in bytes
+     * @param direct whether to allocate the segments off-heap
+     * @return the buffer
+     */
+    public static SegmentedBuffer allocate(long size, boolean direct) {
+        int segmentBits = segmentBits(size);
+        ByteBuffer[] segments = new ByteBuffer[numSegments(size, segmentBits)];
+        for (int i = 0; i < segments.length; i++) {
+            int segmentSize = (int) Math.min(1L << segmentBits, size - ((long) i << segmentBits));
+            segments[i] = direct ? ByteBuffer.allocateDirect(segmentSize) : ByteBuffer.allocate(segmentSize);
+            segments[i].order(ByteOrder.BIG_ENDIAN);
+        }
+        return new SegmentedBuffer(segments, segmentBits, size);
+    }
+
+    /**
+     * Memory-maps a local file read-only, one mapping per segment.
+     * @param path path of the file
+     * @return the buffer
+     * @throws IOException
+     */
+    public static SegmentedBuffer map(String path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            int segmentBits = segmentBits(size);
+            ByteBuffer[] segments = new ByteBuffer[numSegments(size, segmentBits)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i << segmentBits;
+                long segmentSize = Math.min(1L << segmentBits, size - position);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, segmentSize);
+                segments[i].order(ByteOrder.BIG_ENDIAN);
+            }
+            return new SegmentedBuffer(segments, segmentBits, size);
+        }
+    }
+
+    /**
+     * Reads exactly size bytes from a stream into a newly allocated buffer.
+     * @param in stream to read from
+     * @param size number of bytes to read
+     * @param direct whether to allocate the segments off-heap
+     * @return the buffer
+     * @throws IOException if the stream ends early or cannot be read
+     */
+    public static SegmentedBuffer readFully(InputStream in, long size, boolean direct) throws IOException {
+        SegmentedBuffer buf = allocate(size, direct);
+        byte[] chunk = new byte[(int) Math.min(COPY_CHUNK_SIZE, Math.max(size, 1))];
+        for (ByteBuffer segment : buf.segments) {
+            while (segment.hasRemaining()) {
+                int read = in.read(chunk, 0, Math.min(chunk.length, segment.remaining()));
+                if (read < 0) {
+                    throw new EOFException("Stream ended after " + segment.position() + " bytes of a segment; expected "
+                        + size + " bytes in total");
+                }
+                segment.put(chunk, 0, read);
+            }
+            segment.flip();
+        }
+        return buf;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int numSegments() {
+        return segments.length;
+    }
+
+    public byte get(long pos) {
+        return segments[(int) (pos >>> segmentBits)].get((int) (pos & segmentMask));
+    }
+
+    /**
+     * Copies len bytes starting at pos into dst, crossing segment boundaries if needed.
+     */
+    public void get(long pos, byte[] dst, int off, int len) {
+        while (len > 0) {
+            ByteBuffer segment = segments[(int) (pos >>> segmentBits)];
+            int segmentOffset = (int) (pos & segmentMask);
+            int n = Math.min(len, segment.limit() - segmentOffset);
+            segment.get(segmentOffset, dst, off, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * @return whether the len bytes starting at pos lie within a single segment, so that
+     * slice(pos, len) can return them
+     */
+    public boolean isContiguous(long pos, int len) {
+        return len <= segments[(int) (pos >>> segmentBits)].limit() - (int) (pos & segmentMask);
+    }
+
+    /**
+     * Returns a view of len bytes starting at pos. The view shares the buffer's memory; the
+     * range must lie within a single segment.
+     * @throws IllegalArgumentException if the range crosses a segment boundary
+     */
+    public ByteBuffer slice(long pos, int len) {
+        if (!isContiguous(pos, len)) {
+            throw new IllegalArgumentException("Range of " + len + " bytes at " + pos + " crosses a segment boundary");
+        }
+        ByteBuffer segment = segments[(int) (pos >>> segmentBits)];
+        int segmentOffset = (int) (pos & segmentMask);
+        return segment.slice(segmentOffset, len).order(segment.order());
+    }
+
+    /**
+     * Returns the data as a single ByteBuffer, for consumers that are int-addressed (such as
+     * SuccinctBuffer). Only possible if the data fits in one segment.
+     * @return a duplicate of the only segment
+     * @throws IOException if the data is larger than a single ByteBuffer can hold
+     */
+    public ByteBuffer asByteBuffer() throws IOException {
+        if (segments.length != 1) {
+            throw tooLargeForByteBuffer(size);
+        }
+        return segments[0].duplicate().order(segments[0].order());
+    }
+
+    /**
+     * Checks, before any data is read, that size bytes can later be returned by asByteBuffer().
+     * @throws IOException if the data is larger than a single ByteBuffer can hold
+     */
+    public static void checkFitsByteBuffer(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw tooLargeForByteBuffer(size);
+        }
+    }
+
+    private static IOException tooLargeForByteBuffer(long size) {
+        return new IOException("Data is " + size + " bytes; a single ByteBuffer holds at most "
+            + Integer.MAX_VALUE + " bytes. Shard the input or address it as a SegmentedBuffer.");
+    }
+
+    private static int segmentBits(long size) {
+        return size <= Integer.MAX_VALUE ? SINGLE_SEGMENT_BITS : DEFAULT_SEGMENT_BITS;
+    }
+
+    private static int numSegments(long size, int segmentBits) {
+        long n = (size + (1L << segmentBits) - 1) >>> segmentBits;
+        return (int) Math.max(1, n);
+    }
+}
@@ -0,0 +1,217 @@
+package edu.berkeley.cs.succinct.perf;
+
+import edu.berkeley.cs.succinct.StorageMode;
+import edu.berkeley.cs.succinct.buffers.SuccinctBuffer;
+import edu.berkeley.cs.succinct.perf.storage.HadoopStorageBackend;
+import edu.berkeley.cs.succinct.perf.storage.StorageBackend;
+import edu.berkeley.cs.succinct.streams.SuccinctStream;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Measures what the other benchmarks leave out: the time to load a dataset and the latency of
+ * the first queries that follow, while the data is still cold. Every loading path is timed from
+ * the start of the load to the end of the first query, with page faults and RSS read from
+ * /proc/self. The same lookupSA queries are issued on every path, since it is the one operation
+ * all of SuccinctBuffer, SuccinctFileBuffer and SuccinctStream support.
+ *
+ * For a genuinely cold start, run each path in a fresh JVM with the OS page cache dropped; in
+ * one JVM, later paths may find the data file already cached by earlier ones.
+ */
+public class StartupBench {
+
+    private static final int MAX_QUERIES = 1000;
+    private static final int OS_PAGE_SIZE = 4096;
+    private static final int PREFAULT_CHUNK = 1 << 20;
+
+    /**
+     * How a dataset is loaded.
+     */
+    public enum LoadPath {
+        /** new SuccinctBuffer(path, MEMORY_ONLY) */
+        MEMORY_ONLY,
+        /** new SuccinctBuffer(path, MEMORY_MAPPED) */
+        MEMORY_MAPPED,
+        /** new SuccinctFileBuffer(ByteBuffer), with the buffer read from TFS */
+        TFS,
+        /** SuccinctStream over the stream backend */
+        STREAM
+    }
+
+    /**
+     * Work moved from the first queries into startup.
+     */
+    public enum WarmMode {
+        /** Nothing; the first queries pay for all cold data */
+        NONE,
+        /**
+         * Touch every page of the data before the first query: a local file is mapped and
+         * faulted into the OS page cache, and stream data is read once through the stream
+         * backend (and so through the page cache, if one is used) into a small reused buffer,
+         * so the stream's footprint is not inflated by a copy. No-op for paths that read the
+         * whole file while loading.
+         */
+        PREFAULT,
+        /** Run a separate set of untimed queries before the first timed one */
+        PRELOAD
+    }
+
+    private interface Lookup {
+        long lookupSA(long i);
+    }
+
+    private final StorageBackend tfsBackend;
+    private final StorageBackend streamBackend;
+    private final String dataPath;
+    private final WarmMode warmMode;
+
+    public StartupBench(StorageBackend tfsBackend, StorageBackend streamBackend, String dataPath,
+        WarmMode warmMode) {
+        this.tfsBackend = tfsBackend;
+        this.streamBackend = streamBackend;
+        this.dataPath = dataPath;
+        this.warmMode = warmMode;
+    }
+
+    /**
+     * Loads the dataset through one path and times the load and the first MAX_QUERIES queries.
+     * Per-query latencies are written to resPath, and a summary line is appended to
+     * resPath_summary.
+     * @param loadPath how to load the dataset
+     * @param resPath output path
+     * @throws IOException
+     */
+    public void benchStartup(LoadPath loadPath, String resPath) throws IOException {
+        System.out.println("Benchmarking startup (" + loadPath + ", warm mode " + warmMode + ")...");
+
+        boolean peakReset = ProcessStats.resetPeakRss();
+        long minorBefore = ProcessStats.minorFaults();
+        long majorBefore = ProcessStats.majorFaults();
+
+        long start = System.nanoTime();
+        prefault(loadPath);
+        Lookup lookup;
+        int originalSize;
+        switch (loadPath) {
+            case MEMORY_ONLY:
+            case MEMORY_MAPPED: {
+                StorageMode mode = loadPath == LoadPath.MEMORY_ONLY ? StorageMode.MEMORY_ONLY : StorageMode.MEMORY_MAPPED;
+                final SuccinctBuffer buffer = new SuccinctBuffer(dataPath, mode);
+                lookup = buffer::lookupSA;
+                originalSize = buffer.getOriginalSize();
+                break;
+            }
+            case TFS: {
+                final SuccinctBuffer buffer = tfsBackend.openFileBuffer(dataPath);
+                lookup = buffer::lookupSA;
+                originalSize = buffer.getOriginalSize();
+                break;
+            }
+            default: {
+                final SuccinctStream stream = streamBackend.openStream(dataPath);
+                lookup = stream::lookupSA;
+                originalSize = stream.getOriginalSize();
+                break;
+            }
+        }
+        if (warmMode == WarmMode.PRELOAD) {
+            long sum = 0;
+            for (long i : BenchmarkUtils.generateRandoms(MAX_QUERIES, originalSize)) {
+                sum += lookup.lookupSA(i);
+            }
+            System.out.println("Preload complete: Checksum = " + sum);
+        }
+        long loadNanos = System.nanoTime() - start;
+        long minorLoad = ProcessStats.minorFaults() - minorBefore;
+        long majorLoad = ProcessStats.majorFaults() - majorBefore;
+
+        long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, originalSize);
+        LatencyRecorder recorder = new LatencyRecorder("startup-" + loadPath.name().toLowerCase());
+        long[] values = new long[randoms.length];
+        long[] latencies = new long[randoms.length];
+
+        int q = 0;
+        for (long i : randoms) {
+            long queryStart = System.nanoTime();
+            long value = lookup.lookupSA(i);
+            long end = System.nanoTime();
+            values[q] = value;
+            latencies[q++] = end - queryStart;
+            recorder.record(end - queryStart);
+        }
+        long minorQueries = ProcessStats.minorFaults() - minorBefore - minorLoad;
+        long majorQueries = ProcessStats.majorFaults() - majorBefore - majorLoad;
+        long rss = ProcessStats.rssBytes();
+        long peakRss = ProcessStats.peakRssBytes();
+
+        System.out.println("Load time = " + loadNanos / 1000000 + " ms, first query = " + latencies[0] / 1000
+            + " us, time to first query = " + (loadNanos + latencies[0]) / 1000000 + " ms");
+        System.out.println("Page faults during load = " + minorLoad + " minor, " + majorLoad + " major;"
+            + " during queries = " + minorQueries + " minor, " + majorQueries + " major");
+        System.out.println("RSS = " + ProcessStats.formatMB(rss) + ", peak RSS" + (peakReset ? " since load" : "")
+            + " = " + ProcessStats.formatMB(peakRss));
+        recorder.report(resPath);
+        BenchmarkUtils.writeResults(resPath, values, latencies);
+
+        String summaryPath = resPath + "_summary";
+        boolean header = !new File(summaryPath).exists();
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(summaryPath, true));
+        if (header) {
+            bufferedWriter.write("path,warm_mode,load_ms,first_query_us,time_to_first_query_ms,"
+                + "load_minor_faults,load_major_faults,query_minor_faults,query_major_faults,rss_bytes,peak_rss_bytes\n");
+        }
+        bufferedWriter.write(loadPath + "," + warmMode + "," + loadNanos / 1e6 + "," + latencies[0] / 1e3 + ","
+            + (loadNanos + latencies[0]) / 1e6 + "," + minorLoad + "," + majorLoad + "," + minorQueries + ","
+            + majorQueries + "," + rss + "," + peakRss + "\n");
+        bufferedWriter.close();
+    }
+
+    /**
+     * Benchmarks every loading path in turn.
+     * @param resPath prefix of the output paths
+     * @throws IOException
+     */
+    public void benchAll(String resPath) throws IOException {
+        for (LoadPath loadPath : LoadPath.values()) {
+            benchStartup(loadPath, resPath + "_" + loadPath.name().toLowerCase());
+        }
+    }
+
+    private void prefault(LoadPath loadPath) throws IOException {
+        if (warmMode != WarmMode.PREFAULT) {
+            return;
+        }
+        long sum = 0;
+        long size;
+        if (loadPath == LoadPath.MEMORY_MAPPED) {
+            SegmentedBuffer data = SegmentedBuffer.map(dataPath);
+            size = data.size();
+            for (long pos = 0; pos < size; pos += OS_PAGE_SIZE) {
+                sum += data.get(pos);
+            }
+        } else if (loadPath == LoadPath.STREAM && streamBackend instanceof HadoopStorageBackend) {
+            HadoopStorageBackend backend = (HadoopStorageBackend) streamBackend;
+            Path path = backend.getPath(dataPath);
+            byte[] chunk = new byte[PREFAULT_CHUNK];
+            size = 0;
+            try (FSDataInputStream in = path.getFileSystem(backend.getConf()).open(path)) {
+                int n;
+                while ((n = in.read(chunk, 0, chunk.length)) > 0) {
+                    for (int pos = 0; pos < n; pos += OS_PAGE_SIZE) {
+                        sum += chunk[pos];
+                    }
+                    size += n;
+                }
+            }
+        } else {
+            // The load reads the whole file anyway, or the stream backend cannot be read in place
+            return;
+        }
+        System.out.println("Prefaulted " + size + " bytes: Checksum = " + sum);
+    }
+}
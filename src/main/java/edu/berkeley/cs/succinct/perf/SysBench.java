@@ -0,0 +1,281 @@
+package edu.berkeley.cs.succinct.perf;
+
+import edu.berkeley.cs.succinct.StorageMode;
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+import edu.berkeley.cs.succinct.perf.baseline.ParallelScanner;
+import edu.berkeley.cs.succinct.perf.baseline.SuccinctTextIndex;
+import edu.berkeley.cs.succinct.perf.baseline.SuffixArrayIndex;
+import edu.berkeley.cs.succinct.perf.baseline.TextIndex;
+import org.HdrHistogram.Histogram;
+import org.apache.commons.cli.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares Succinct count and search against two baselines over the same input and queries:
+ * a parallel scan of the raw bytes, which needs no index, and an uncompressed suffix array,
+ * which answers queries much like Succinct does but from plain arrays. Reports the latency,
+ * throughput and memory footprint of each side by side.
+ *
+ * All three are held in memory. SysBench uses no Spark APIs, so it runs unchanged under
+ * spark-submit (as bin/sysbench does) or with plain java.
+ */
+public class SysBench {
+
+    private static final int WARMUP_QUERIES = 100;
+    private static final int MAX_QUERIES = 1000;
+    private static final int CHECK_QUERIES = 100;
+
+    private static final int WARMUP_TIME = 10; // seconds
+    private static final int MEASUREMENT_TIME = 30; // seconds
+    private static final int COOLDOWN_TIME = 5; // seconds
+
+    private final TextIndex index;
+    private final long setupNanos;
+    private final long heapGrowth;
+
+    private SysBench(TextIndex index, long setupNanos, long heapGrowth) {
+        this.index = index;
+        this.setupNanos = setupNanos;
+        this.heapGrowth = heapGrowth;
+        System.out.println("Set up " + index.getName() + " in " + setupNanos / 1000000 + " ms; footprint = "
+            + ProcessStats.formatMB(index.memoryBytes()) + ", heap growth = " + ProcessStats.formatMB(heapGrowth));
+    }
+
+    public static SysBench scanner(byte[] text, ForkJoinPool pool) {
+        long heapBefore = settledHeapBytes();
+        long start = System.nanoTime();
+        ByteBuffer buf = ByteBuffer.allocateDirect(text.length);
+        buf.put(text);
+        buf.flip();
+        TextIndex index = new ParallelScanner(buf, pool);
+        return new SysBench(index, System.nanoTime() - start, settledHeapBytes() - heapBefore);
+    }
+
+    public static SysBench suffixArray(byte[] text) {
+        long heapBefore = settledHeapBytes();
+        long start = System.nanoTime();
+        TextIndex index = new SuffixArrayIndex(text);
+        return new SysBench(index, System.nanoTime() - start, settledHeapBytes() - heapBefore);
+    }
+
+    /**
+     * @param succinctPath path of a serialized SuccinctFileBuffer of text, loaded into memory; if
+     *                     null, one is built from text
+     */
+    public static SysBench succinct(byte[] text, String succinctPath) throws IOException {
+        long heapBefore = settledHeapBytes();
+        long start = System.nanoTime();
+        SuccinctFileBuffer buffer;
+        long size;
+        if (succinctPath != null) {
+            buffer = new SuccinctFileBuffer(succinctPath, StorageMode.MEMORY_ONLY);
+            size = new File(succinctPath).length();
+        } else {
+            buffer = new SuccinctFileBuffer(text);
+            File tmp = File.createTempFile("sysbench", ".succinct");
+            buffer.writeToFile(tmp.getAbsolutePath());
+            size = tmp.length();
+            tmp.delete();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new SysBench(new SuccinctTextIndex(buffer, size), elapsed, settledHeapBytes() - heapBefore);
+    }
+
+    public Histogram benchCountLatency(final byte[][] queries, String resPath) throws IOException {
+        System.out.println("Benchmarking " + index.getName() + " count latency...");
+        return benchLatency("count", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return index.count(queries[i]);
+            }
+        }, queries.length, resPath);
+    }
+
+    public Histogram benchSearchLatency(final byte[][] queries, String resPath) throws IOException {
+        System.out.println("Benchmarking " + index.getName() + " search latency...");
+        return benchLatency("search", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return index.search(queries[i]).length;
+            }
+        }, queries.length, resPath);
+    }
+
+    public double benchCountThroughput(final byte[][] queries, String resPath, int numThreads)
+        throws IOException, InterruptedException, ExecutionException {
+
+        System.out.println("Benchmarking " + index.getName() + " count throughput with " + numThreads + " threads...");
+        return benchThroughput("count", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return index.count(queries[i]);
+            }
+        }, queries.length, numThreads, resPath);
+    }
+
+    public double benchSearchThroughput(final byte[][] queries, String resPath, int numThreads)
+        throws IOException, InterruptedException, ExecutionException {
+
+        System.out.println("Benchmarking " + index.getName() + " search throughput with " + numThreads + " threads...");
+        return benchThroughput("search", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return index.search(queries[i]).length;
+            }
+        }, queries.length, numThreads, resPath);
+    }
+
+    private Histogram benchLatency(String name, BenchmarkOp op, int numQueries, String resPath) throws IOException {
+        LatencyRecorder recorder = new LatencyRecorder(name);
+        long[] values = new long[numQueries];
+        long[] latencies = new long[numQueries];
+
+        long sum = 0;
+        for (int i = 0; i < Math.min(numQueries, WARMUP_QUERIES); i++) {
+            sum += op.execute(i);
+        }
+
+        System.out.println("Warmup complete: Checksum = " + sum);
+
+        for (int i = 0; i < numQueries; i++) {
+            long start = System.nanoTime();
+            values[i] = op.execute(i);
+            long end = System.nanoTime();
+            latencies[i] = end - start;
+            recorder.record(end - start);
+        }
+
+        recorder.report(resPath);
+        BenchmarkUtils.writeResults(resPath, values, latencies);
+        return recorder.getHistogram();
+    }
+
+    private double benchThroughput(String name, BenchmarkOp op, int numQueries, int numThreads, String resPath)
+        throws IOException, InterruptedException, ExecutionException {
+
+        ThroughputEngine.Result result = new ThroughputEngine(numThreads, WARMUP_TIME, MEASUREMENT_TIME, COOLDOWN_TIME)
+            .run(name, op, numQueries);
+        System.out.println(name + " queries executed per second: " + result.getQps());
+        result.writeTimeSeries(resPath);
+        return result.getQps();
+    }
+
+    private static long settledHeapBytes() {
+        System.gc();
+        return ProcessStats.heapUsedBytes();
+    }
+
+    /**
+     * Checks that every engine counts as many matches as the first for the first queries, since
+     * a baseline that disagrees with Succinct is not measuring the same work.
+     */
+    private static void checkCounts(List<SysBench> benches, byte[][] queries) {
+        int n = Math.min(queries.length, CHECK_QUERIES);
+        TextIndex reference = benches.get(0).index;
+        for (int i = 0; i < n; i++) {
+            long expected = reference.count(queries[i]);
+            for (SysBench bench : benches.subList(1, benches.size())) {
+                long count = bench.index.count(queries[i]);
+                if (count != expected) {
+                    System.out.println("WARNING: " + bench.index.getName() + " counts " + count + " matches for query "
+                        + i + "; " + reference.getName() + " counts " + expected);
+                }
+            }
+        }
+    }
+
+    // Main class
+    public static void main(String[] args) {
+        CommandLineParser parser = new DefaultParser();
+        Options options = new Options();
+        options.addOption("q", true, "Path to query file");
+        options.addOption("r", true, "Prefix of the paths where the results will be stored (default results/sys)");
+        options.addOption("n", true, "Number of threads: scan threads per query, and client threads for throughput"
+            + " benchmarks (default: number of processors)");
+        HelpFormatter formatter = new HelpFormatter();
+
+        try {
+            CommandLine line = parser.parse(options, args);
+            if (line.getArgs().length < 1 || line.getArgs().length > 2 || !line.hasOption("q")) {
+                System.out.println("Path to the raw input and query file must be specified.");
+                formatter.printHelp("sysbench <raw data path> [<succinct data path>]", options);
+                System.exit(0);
+            }
+
+            String dataPath = line.getArgs()[0];
+            String succinctPath = line.getArgs().length > 1 ? line.getArgs()[1] : null;
+            String queryFile = line.getOptionValue("q");
+            String resPath = line.getOptionValue("r");
+            if (resPath == null) {
+                System.out.println("Result path not specified; results will be stored in results/");
+                new File("results").mkdirs();
+                resPath = "results/sys";
+            }
+            int numThreads = Integer.parseInt(line.getOptionValue("n",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+            byte[] text = Files.readAllBytes(Paths.get(dataPath));
+            byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+            System.out.println("Read " + text.length + " bytes from " + dataPath + " and " + queries.length
+                + " queries from " + queryFile);
+
+            ForkJoinPool pool = new ForkJoinPool(numThreads);
+            List<SysBench> benches = new ArrayList<SysBench>();
+            benches.add(SysBench.succinct(text, succinctPath));
+            benches.add(SysBench.scanner(text, pool));
+            benches.add(SysBench.suffixArray(text));
+            checkCounts(benches, queries);
+
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("%-24s %12s %8s %10s %12s %12s %12s %12s %12s %12s%n", "engine", "footprint",
+                "x input", "setup ms", "count p50", "count p99", "search p50", "search p99", "count qps", "search qps"));
+            BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath + "_sysbench.csv"));
+            bufferedWriter.write("engine,footprint_bytes,footprint_ratio,heap_growth_bytes,setup_ms,count_p50_ns,"
+                + "count_p99_ns,search_p50_ns,search_p99_ns,count_qps,search_qps\n");
+            for (SysBench bench : benches) {
+                String enginePath = resPath + "_" + bench.index.getName().split(" \\(")[0].replace(' ', '_');
+                Histogram count = bench.benchCountLatency(queries, enginePath + "_count");
+                Histogram search = bench.benchSearchLatency(queries, enginePath + "_search");
+                double countQps = bench.benchCountThroughput(queries, enginePath + "_count_thput", numThreads);
+                double searchQps = bench.benchSearchThroughput(queries, enginePath + "_search_thput", numThreads);
+
+                long footprint = bench.index.memoryBytes();
+                double ratio = (double) footprint / text.length;
+                long setupMs = bench.setupNanos / 1000000;
+                report.append(String.format("%-24s %12s %8.2f %10d %12d %12d %12d %12d %12.1f %12.1f%n",
+                    bench.index.getName(), ProcessStats.formatMB(footprint), ratio, setupMs,
+                    count.getValueAtPercentile(50), count.getValueAtPercentile(99), search.getValueAtPercentile(50),
+                    search.getValueAtPercentile(99), countQps, searchQps));
+                bufferedWriter.write(bench.index.getName() + "," + footprint + "," + ratio + "," + bench.heapGrowth + ","
+                    + setupMs + "," + count.getValueAtPercentile(50) + "," + count.getValueAtPercentile(99) + ","
+                    + search.getValueAtPercentile(50) + "," + search.getValueAtPercentile(99) + "," + countQps + ","
+                    + searchQps + "\n");
+                bufferedWriter.flush();
+            }
+            bufferedWriter.close();
+            pool.shutdown();
+
+            System.out.println();
+            System.out.print(report);
+            System.out.println("Latencies in ns; results written to " + resPath + "_sysbench.csv");
+        } catch (ParseException exception) {
+            System.out.println("Could not parse command line options: " + exception.getMessage());
+            formatter.printHelp("sysbench <raw data path> [<succinct data path>]", options);
+            System.exit(0);
+        } catch (IOException | ExecutionException | InterruptedException e) {
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+}
@@ -21,13 +21,38 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 
 public class TachyonUtil {
 
     private static final String READ_TYPE = "NO_CACHE";
 
+    /**
+     * How a file on tfs is brought into memory before it is handed to Succinct.
+     * <ul>
+     *   <li>HEAP: streamed into a Java heap buffer</li>
+     *   <li>DIRECT: streamed in 8 MB chunks into an off-heap direct buffer, so the data is not
+     *   on the Java heap and is never held twice</li>
+     *   <li>MAPPED: zero-copy; a local copy of the file at the same path is memory-mapped, and
+     *   pages are only faulted in when queried. Falls back to DIRECT if there is no local copy.</li>
+     * </ul>
+     */
+    public enum LoadMode {
+        HEAP,
+        DIRECT,
+        MAPPED
+    }
+
+    private static LoadMode loadMode = LoadMode.DIRECT;
+
+    public static void setLoadMode(LoadMode mode) {
+        loadMode = mode;
+    }
+
+    public static LoadMode getLoadMode() {
+        return loadMode;
+    }
+
     /**
      * Gets a SuccinctFileBuffer from the file at filePath stored on tfs
      * @param tachyonMasterLoc tachyon master address
@@ -35,50 +60,47 @@ public class TachyonUtil {
      * @return the SuccinctFileBuffer of the file
      */
     public static SuccinctFileBuffer getFileBuffer(String tachyonMasterLoc, String filePath) {
+        ByteBuffer byteBuffer = loadBuffer(tachyonMasterLoc, filePath);
+        return byteBuffer == null ? null : new SuccinctFileBuffer(byteBuffer);
+    }
 
-        TachyonFileSystem tfs;
-        TachyonFile file;
-
-        TachyonUtil.setupTFS(tachyonMasterLoc);
-
-        TachyonURI fileURI = new TachyonURI("/" + filePath);
-
-        ReadType rType = ReadType.valueOf(READ_TYPE);
-        InStreamOptions readOptions = new InStreamOptions.Builder(ClientContext.getConf()).setReadType(rType).build();
-
-        try (Closer closer = Closer.create()) {
-
-            tfs = TachyonFileSystem.TachyonFileSystemFactory.get();
-
-            try {
-                file = tfs.open(fileURI);
-            } catch (InvalidPathException e) {
-                System.out.println("File does not exist on tfs. Attempting to copy file from local to tfs...");
-                long start = System.currentTimeMillis();
-                TachyonUtil.copyFile(tfs, filePath, fileURI, closer);
-                long stop = System.currentTimeMillis();
-                System.out.println("Copied file to tfs!\nTime taken: " + (stop-start)/1000 + " ms.");
-                file = tfs.open(fileURI);
-            }
-
-            System.out.println("Reading tachyon file ByteBuffer...");
-            ByteBuffer byteBuffer = TachyonUtil.readByteBuf(tfs, file, readOptions);
-
-            return new SuccinctFileBuffer(byteBuffer);
+    /**
+     * Gets a SuccinctBuffer from the file at filePath stored on tfs
+     * @param tachyonMasterLoc tachyon master address
+     * @param filePath path of succinct file (no starting slash)
+     * @return the SuccinctBuffer of the file
+     */
+    public static SuccinctBuffer getBuffer(String tachyonMasterLoc, String filePath) {
+        ByteBuffer byteBuffer = loadBuffer(tachyonMasterLoc, filePath);
+        return byteBuffer == null ? null : new SuccinctFileBuffer(byteBuffer);
+    }
 
-        } catch (TachyonException|IOException e) {
+    private static ByteBuffer loadBuffer(String tachyonMasterLoc, String filePath) {
+        SegmentedBuffer data = getData(tachyonMasterLoc, filePath, true);
+        try {
+            return data == null ? null : data.asByteBuffer();
+        } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
     }
 
     /**
-     * Gets a SuccinctBuffer from the file at filePath stored on tfs
+     * Loads the file at filePath stored on tfs using the current load mode, and reports the
+     * load time and memory footprint
      * @param tachyonMasterLoc tachyon master address
-     * @param filePath path of succinct file (no starting slash)
-     * @return the SuccinctBuffer of the file
+     * @param filePath path of the file (no starting slash)
+     * @return the contents of the file, or null if it could not be read
      */
-    public static SuccinctBuffer getBuffer(String tachyonMasterLoc, String filePath) {
+    public static SegmentedBuffer getData(String tachyonMasterLoc, String filePath) {
+        return getData(tachyonMasterLoc, filePath, false);
+    }
+
+    /**
+     * @param singleBuffer whether the data must fit in a single ByteBuffer; if so, larger files
+     *                     are rejected before they are read
+     */
+    private static SegmentedBuffer getData(String tachyonMasterLoc, String filePath, boolean singleBuffer) {
 
         TachyonFileSystem tfs;
         TachyonFile file;
@@ -105,19 +127,38 @@ public class TachyonUtil {
                 file = tfs.open(fileURI);
             }
 
-            System.out.println("Reading tachyon file ByteBuffer...");
-            ByteBuffer byteBuffer = TachyonUtil.readByteBuf(tfs, file, readOptions);
+            LoadMode mode = loadMode;
+            if (mode == LoadMode.MAPPED && !new File(filePath).isFile()) {
+                System.out.println("No local copy of " + filePath + " to map; loading into a direct buffer instead.");
+                mode = LoadMode.DIRECT;
+            }
+
+            if (singleBuffer) {
+                SegmentedBuffer.checkFitsByteBuffer(mode == LoadMode.MAPPED ? new File(filePath).length()
+                    : fileLength(tfs, file, readOptions));
+            }
+
+            System.out.println("Reading tachyon file (" + mode + ")...");
+            boolean peakReset = ProcessStats.resetPeakRss();
+            long heapBefore = ProcessStats.heapUsedBytes();
+            long start = System.nanoTime();
+
+            SegmentedBuffer data;
+            if (mode == LoadMode.MAPPED) {
+                data = SegmentedBuffer.map(filePath);
+            } else {
+                data = readSegmentedBuf(tfs, file, readOptions, mode == LoadMode.DIRECT);
+            }
 
-            return new SuccinctFileBuffer(byteBuffer);
+            ProcessStats.printLoadStats(data.size(), System.nanoTime() - start, heapBefore, peakReset);
+            return data;
 
         } catch (TachyonException|IOException e) {
             e.printStackTrace();
             return null;
         }
-
     }
 
-
     /**
      * Copies file to tfs from inPath to outURI
      * @param inPath path of input file
@@ -147,16 +188,53 @@ public class TachyonUtil {
      * @param file file to read from
      * @param readOps read options
      * @return byte buffer of file
-     * @throws IOException
+     * @throws IOException if the file is larger than a single ByteBuffer can hold
      * @throws TachyonException
      */
     public static ByteBuffer readByteBuf(TachyonFileSystem tfs, TachyonFile file, InStreamOptions readOps)
         throws IOException, TachyonException {
-        FileInStream inStream = tfs.getInStream(file, readOps);
-        ByteBuffer buf = ByteBuffer.allocate((int) inStream.remaining());
-        inStream.read(buf.array());
-        buf.order(ByteOrder.BIG_ENDIAN);
-        return buf;
+        return readByteBuf(tfs, file, readOps, false);
+    }
+
+    /**
+     * Reads ByteBuffer in from file existing in tfs, in chunks
+     * @param file file to read from
+     * @param readOps read options
+     * @param direct whether to read into an off-heap direct buffer
+     * @return byte buffer of file
+     * @throws IOException if the file is larger than a single ByteBuffer can hold
+     * @throws TachyonException
+     */
+    public static ByteBuffer readByteBuf(TachyonFileSystem tfs, TachyonFile file, InStreamOptions readOps,
+        boolean direct) throws IOException, TachyonException {
+        try (FileInStream inStream = tfs.getInStream(file, readOps)) {
+            long size = inStream.remaining();
+            SegmentedBuffer.checkFitsByteBuffer(size);
+            return SegmentedBuffer.readFully(inStream, size, direct).asByteBuffer();
+        }
+    }
+
+    /**
+     * Reads a file existing in tfs of any size into a long-addressed segmented buffer
+     * @param file file to read from
+     * @param readOps read options
+     * @param direct whether to allocate the buffer off-heap
+     * @return segmented buffer of file
+     * @throws IOException
+     * @throws TachyonException
+     */
+    public static SegmentedBuffer readSegmentedBuf(TachyonFileSystem tfs, TachyonFile file, InStreamOptions readOps,
+        boolean direct) throws IOException, TachyonException {
+        try (FileInStream inStream = tfs.getInStream(file, readOps)) {
+            return SegmentedBuffer.readFully(inStream, inStream.remaining(), direct);
+        }
+    }
+
+    private static long fileLength(TachyonFileSystem tfs, TachyonFile file, InStreamOptions readOps)
+        throws IOException, TachyonException {
+        try (FileInStream inStream = tfs.getInStream(file, readOps)) {
+            return inStream.remaining();
+        }
     }
 
     /**
@@ -0,0 +1,296 @@
+package edu.berkeley.cs.succinct.perf;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Closed-loop, multi-threaded throughput engine.
+ *
+ * The query set is partitioned into contiguous, disjoint ranges, one per thread. Every
+ * phase (warmup, measurement, cooldown) starts on all threads together at a barrier. Each
+ * thread publishes its operation count into its own padded slot of a striped counter array,
+ * which a coordinator samples once per second to build a throughput time series.
+ */
+public class ThroughputEngine {
+
+    // 16 longs = 128 bytes between slots, so no two threads' counters share a cache line
+    // (or an adjacent-line prefetch pair)
+    private static final int COUNTER_STRIDE = 16;
+
+    private static final int WARMUP = 0;
+    private static final int MEASUREMENT = 1;
+    private static final int COOLDOWN = 2;
+    private static final int DONE = 3;
+    private static final String[] PHASE_NAMES = {"warmup", "measurement", "cooldown"};
+
+    private final int numThreads;
+    private final int[] phaseSecs;
+
+    private volatile int phase;
+    private volatile Throwable failure;
+
+    public ThroughputEngine(int numThreads, int warmupSecs, int measurementSecs, int cooldownSecs) {
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.numThreads = numThreads;
+        this.phaseSecs = new int[] {warmupSecs, measurementSecs, cooldownSecs};
+    }
+
+    /**
+     * Result of a throughput run.
+     */
+    public static class Result {
+        private final String name;
+        private final int numThreads;
+        private final long measuredOps;
+        private final long measuredNanos;
+        private final long[] perSecond;
+        private final int[] perSecondPhase;
+
+        Result(String name, int numThreads, long measuredOps, long measuredNanos, long[] perSecond,
+            int[] perSecondPhase) {
+            this.name = name;
+            this.numThreads = numThreads;
+            this.measuredOps = measuredOps;
+            this.measuredNanos = measuredNanos;
+            this.perSecond = perSecond;
+            this.perSecondPhase = perSecondPhase;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getNumThreads() {
+            return numThreads;
+        }
+
+        public long getMeasuredOps() {
+            return measuredOps;
+        }
+
+        /**
+         * @return duration of the measurement phase in nanoseconds
+         */
+        public long getMeasuredNanos() {
+            return measuredNanos;
+        }
+
+        /**
+         * @return operations per second over the measurement phase
+         */
+        public double getQps() {
+            return measuredOps / (measuredNanos / 1e9);
+        }
+
+        /**
+         * @return operations completed in each second of the run, across all phases
+         */
+        public long[] getTimeSeries() {
+            return perSecond;
+        }
+
+        /**
+         * Writes the per-second time series as CSV (second,phase,ops).
+         * @param path output path
+         * @throws IOException
+         */
+        public void writeTimeSeries(String path) throws IOException {
+            BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(path));
+            bufferedWriter.write("second,phase,ops\n");
+            for (int s = 0; s < perSecond.length; s++) {
+                bufferedWriter.write((s + 1) + "," + PHASE_NAMES[perSecondPhase[s]] + "," + perSecond[s] + "\n");
+            }
+            bufferedWriter.close();
+        }
+    }
+
+    /**
+     * @return whether a run is in its measurement phase, e.g. for operations that keep their own
+     * statistics and should leave out warmup and cooldown
+     */
+    public boolean isMeasuring() {
+        return phase == MEASUREMENT;
+    }
+
+    /**
+     * Runs op on all threads for the configured phases.
+     * @param name name of the operation, used in the report
+     * @param op operation to run
+     * @param numQueries number of query indices to partition among the threads
+     * @return the result of the run
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public Result run(String name, BenchmarkOp op, int numQueries) throws InterruptedException, ExecutionException {
+        if (numQueries <= 0) {
+            throw new IllegalArgumentException("Number of queries must be positive");
+        }
+
+        AtomicLongArray counters = new AtomicLongArray(numThreads * COUNTER_STRIDE);
+        CyclicBarrier barrier = new CyclicBarrier(numThreads + 1);
+        phase = WARMUP;
+        failure = null;
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<Long>> checksums = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            int start = (int) ((long) t * numQueries / numThreads);
+            int end = (int) ((long) (t + 1) * numQueries / numThreads);
+            if (end <= start) {
+                // Fewer queries than threads; threads share single queries
+                start = t % numQueries;
+                end = start + 1;
+            }
+            checksums.add(executor.submit(new Worker(op, start, end, counters, t * COUNTER_STRIDE, barrier)));
+        }
+
+        int totalSecs = phaseSecs[WARMUP] + phaseSecs[MEASUREMENT] + phaseSecs[COOLDOWN];
+        long[] perSecond = new long[totalSecs];
+        int[] perSecondPhase = new int[totalSecs];
+        long measurementStart = 0, measurementStartOps = 0, measuredNanos = 0, measuredOps = 0;
+
+        try {
+            awaitBarrier(barrier);
+            long last = 0;
+            int second = 0;
+            for (int p = WARMUP; p <= COOLDOWN && failure == null; p++) {
+                if (p != WARMUP) {
+                    // Workers store their counts before the barrier, which makes them visible here:
+                    // the sums below cover exactly the operations of the earlier phases
+                    phase = p;
+                    awaitBarrier(barrier);
+                }
+                long phaseStart = System.nanoTime();
+                long phaseStartOps = sum(counters);
+                if (p == MEASUREMENT) {
+                    measurementStart = phaseStart;
+                    measurementStartOps = phaseStartOps;
+                } else if (p == COOLDOWN) {
+                    measuredNanos = phaseStart - measurementStart;
+                    measuredOps = phaseStartOps - measurementStartOps;
+                }
+
+                for (int s = 0; s < phaseSecs[p] && failure == null; s++) {
+                    sleepUntil(phaseStart + TimeUnit.SECONDS.toNanos(s + 1));
+                    long current = sum(counters);
+                    perSecond[second] = current - last;
+                    perSecondPhase[second] = p;
+                    last = current;
+                    second++;
+                }
+            }
+            phase = DONE;
+            awaitBarrier(barrier);
+        } finally {
+            executor.shutdown();
+        }
+
+        if (failure != null) {
+            throw new ExecutionException("Benchmark thread failed", failure);
+        }
+
+        long checksum = 0;
+        for (Future<Long> f : checksums) {
+            checksum += f.get();
+        }
+        System.out.println("Checksum = " + checksum);
+
+        return new Result(name, numThreads, measuredOps, measuredNanos, perSecond, perSecondPhase);
+    }
+
+    private static long sum(AtomicLongArray counters) {
+        long total = 0;
+        for (int i = 0; i < counters.length(); i += COUNTER_STRIDE) {
+            total += counters.get(i);
+        }
+        return total;
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    private static void awaitBarrier(CyclicBarrier barrier) throws InterruptedException {
+        try {
+            barrier.await();
+        } catch (BrokenBarrierException e) {
+            throw new IllegalStateException("Benchmark thread failed", e);
+        }
+    }
+
+    private class Worker implements Callable<Long> {
+        private final BenchmarkOp op;
+        private final int startOffset;
+        private final int endLimit;
+        private final AtomicLongArray counters;
+        private final int slot;
+        private final CyclicBarrier barrier;
+
+        Worker(BenchmarkOp op, int startOffset, int endLimit, AtomicLongArray counters, int slot,
+            CyclicBarrier barrier) {
+            this.op = op;
+            this.startOffset = startOffset;
+            this.endLimit = endLimit;
+            this.counters = counters;
+            this.slot = slot;
+            this.barrier = barrier;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            long ops = 0, checksum = 0;
+            int i = startOffset;
+            int currentPhase = WARMUP;
+
+            barrier.await();
+            while (true) {
+                int p = phase;
+                if (p != currentPhase) {
+                    counters.lazySet(slot, ops);
+                    barrier.await();
+                    if (p == DONE) {
+                        break;
+                    }
+                    currentPhase = p;
+                }
+
+                if (failure != null) {
+                    // Keep following phase changes so that the remaining threads can finish
+                    Thread.sleep(1);
+                    continue;
+                }
+
+                try {
+                    checksum += op.execute(i++);
+                } catch (Throwable e) {
+                    // Errors too: a worker that left would never reach the barrier again, and the
+                    // coordinator would wait for it forever
+                    failure = e;
+                    continue;
+                }
+                counters.lazySet(slot, ++ops);
+                if (i == endLimit) {
+                    i = startOffset;
+                }
+            }
+            return checksum;
+        }
+    }
+}
@@ -1,27 +1,19 @@
 package edu.berkeley.cs.succinct.perf;
 
-import com.google.common.io.Closer;
-import tachyon.TachyonURI;
-import tachyon.client.ClientContext;
-import tachyon.client.ReadType;
-import tachyon.client.file.FileInStream;
-import tachyon.client.file.TachyonFile;
-import tachyon.client.file.TachyonFileSystem;
-import tachyon.client.file.options.InStreamOptions;
-import tachyon.exception.InvalidPathException;
-import tachyon.exception.TachyonException;
+import edu.berkeley.cs.succinct.perf.storage.StorageBackend;
+import org.HdrHistogram.Histogram;
 
 import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.ExecutionException;
 
 public class VanillaTachyonBench {
 
-    private static final String READ_TYPE = "NO_CACHE";
     private static final int MAX_QUERIES = 100000;
     private static final int WARMUP_QUERIES = 10000;
     private static final int MAX_THR_EXT_QUERIES = 1000000000;
@@ -30,176 +22,189 @@ public class VanillaTachyonBench {
     private static final int COOLDOWN_TIME = 120; // seconds
     private static final int MEASUREMENT_TIME = 240; // seconds
 
-    private TachyonFileSystem tfs;
-    private ByteBuffer buf;
-    private long numBytes;
-
-    public VanillaTachyonBench(String tachyonMasterLoc, String filePath) {
-
-        TachyonUtil.setupTFS(tachyonMasterLoc);
-
-        TachyonURI fileURI = new TachyonURI("/" + filePath);
-
-        ReadType rType = ReadType.valueOf(READ_TYPE);
-        InStreamOptions readOptions = new InStreamOptions.Builder(ClientContext.getConf()).setReadType(rType).build();
-
-        try (Closer closer = Closer.create()) {
-
-            tfs = TachyonFileSystem.TachyonFileSystemFactory.get();
-            TachyonFile file;
-
-            try {
-                file = tfs.open(fileURI);
-            } catch (InvalidPathException e) {
-                System.out.println("File does not exist on tfs. Attempting to copy file from local to tfs...");
-                long start = System.currentTimeMillis();
-                TachyonUtil.copyFile(tfs, filePath, fileURI, closer);
-                long stop = System.currentTimeMillis();
-                System.out.println("Copied file to tfs!\nTime taken: " + (stop-start)/1000);
-                file = tfs.open(fileURI);
-            }
-
-            FileInStream inStream = tfs.getInStream(file, readOptions);
-            numBytes = inStream.remaining();
-            System.out.println("[Sanity check] Number of bytes in file: " + numBytes);
-
-            System.out.println("Reading tachyon file ByteBuffer...");
-            buf = TachyonUtil.readByteBuf(tfs, file, readOptions);
-            System.out.println("Done reading ByteBuffer!");
-
-        } catch (TachyonException |IOException e) {
-            e.printStackTrace();
-            System.exit(-1);
-        }
+    private static final int COPY_CHUNK_SIZE = 8 << 20;
+
+    /**
+     * How an extract reads the raw data; each is a separate baseline for SuccinctFileBuffer.extract.
+     * <ul>
+     *   <li>PER_BYTE: the original baseline; a byte-at-a-time copy from the loaded buffer, with
+     *   64-bit offsets</li>
+     *   <li>BULK_GET: an absolute bulk get from the loaded buffer into an array reused across
+     *   queries</li>
+     *   <li>SLICE: reading in place; a zero-copy view of the range in the loaded buffer, as a
+     *   consumer that can work from a ByteBuffer would get it, whose bytes are all read (and
+     *   summed) without being copied. Ranges that cross a segment boundary fall back to
+     *   BULK_GET.</li>
+     *   <li>MAPPED: a bulk get, as in BULK_GET, from a memory-mapped local file. The local copy
+     *   at the data path is used if there is one; otherwise the loaded data is written to a
+     *   temporary file first.</li>
+     * </ul>
+     */
+    public enum ExtractMode {
+        PER_BYTE,
+        BULK_GET,
+        SLICE,
+        MAPPED
+    }
 
+    private SegmentedBuffer buf;
+    private long numBytes;
+    private String filePath;
+    private SegmentedBuffer mapped;
+
+    public VanillaTachyonBench(StorageBackend backend, String filePath) throws IOException {
+        System.out.println("Reading file into segmented buffer (" + backend.getName() + ")...");
+        buf = backend.readData(filePath);
+        numBytes = buf.size();
+        this.filePath = filePath;
+        System.out.println("[Sanity check] Number of bytes in file: " + numBytes);
+        System.out.println("Done reading " + buf.numSegments() + " segment(s)!");
     }
 
-    public void benchAll(String resPath, int extrLen, int numThreads)
+    /**
+     * Runs extract latency and throughput in each mode, and tabulates them in resPath_extract_modes.csv.
+     */
+    public void benchAll(String resPath, int extrLen, int numThreads, ExtractMode[] modes)
         throws IOException, InterruptedException, ExecutionException {
-        benchExtractLatency(resPath, extrLen);
-        benchExtractThroughput(extrLen, numThreads);
+
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath + "_extract_modes.csv"));
+        bufferedWriter.write("mode,extract_p50_ns,extract_p99_ns,extract_qps\n");
+        for (ExtractMode mode : modes) {
+            String modePath = resPath + "_" + mode.name().toLowerCase();
+            Histogram latency = benchExtractLatency(modePath, extrLen, mode);
+            double qps = benchExtractThroughput(modePath + "_extract_thr", extrLen, numThreads, mode);
+            bufferedWriter.write(mode + "," + latency.getValueAtPercentile(50) + "," + latency.getValueAtPercentile(99)
+                + "," + qps + "\n");
+            bufferedWriter.flush();
+        }
+        bufferedWriter.close();
     }
 
-    public void benchExtractLatency(String resPath, int extrLen) throws IOException {
-        System.out.println("Benchmarking extract latency...");
+    public Histogram benchExtractLatency(String resPath, int extrLen, ExtractMode mode) throws IOException {
+        System.out.println("Benchmarking extract latency (" + mode + ")...");
 
-        long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, (int) numBytes - extrLen);
+        long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, numBytes - extrLen);
+        BenchmarkOp op = extractOp(mode, randoms, extrLen);
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("extract " + mode);
+        long[] latencies = new long[randoms.length];
 
-        long sum = 0, qCount = 0;
-        byte[] result = new byte[extrLen];
-        for(long offset: randoms) {
-            for (int i = 0; i < extrLen; i++) {
-                result[i] = buf.get((int) offset + i);
-            }
-            sum += extrLen;
-            qCount++;
-            if(qCount >= WARMUP_QUERIES) break;
+        long sum = 0;
+        for (int i = 0; i < Math.min(randoms.length, WARMUP_QUERIES); i++) {
+            sum += op.execute(i);
         }
 
         System.out.println("Warmup complete: Checksum = " + sum);
 
-        for(long offset: randoms) {
+        for (int i = 0; i < randoms.length; i++) {
             long start = System.nanoTime();
-            for (int i = 0; i < extrLen; i++) {
-                result[i] = buf.get((int) offset + i);
-            }
+            op.execute(i);
             long end = System.nanoTime();
-            //bufferedWriter.write(new String(result) + "\t" + (end - start) + "\n");
-            bufferedWriter.write((end - start) + "\n");
-            totalTime += (end - start);
+            latencies[i] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / randoms.length;
-        System.out.println("Average time per extract query: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        BenchmarkUtils.writeResults(resPath, null, latencies);
+        return recorder.getHistogram();
     }
 
-    public void benchExtractThroughput(int extrLen, int numThreads) throws IOException,
-        InterruptedException, ExecutionException {
+    public double benchExtractThroughput(String resPath, final int extrLen, int numThreads, ExtractMode mode)
+        throws IOException, InterruptedException, ExecutionException {
 
-        System.out.println("Benchmarking extract throughput with " + numThreads + " threads...");
-        long[] randoms = BenchmarkUtils.generateRandoms(MAX_THR_EXT_QUERIES, (int) numBytes - extrLen);
+        System.out.println("Benchmarking extract throughput (" + mode + ") with " + numThreads + " threads...");
+        final long[] randoms = BenchmarkUtils.generateRandoms(MAX_THR_EXT_QUERIES, numBytes - extrLen);
         System.out.println("Generated " + MAX_THR_EXT_QUERIES + " extract queries. Starting benchmark...");
-        int queriesExecuted = 0;
-
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-        List<Future<Integer>> resAccumulator = new ArrayList<>(numThreads);
-        Callable<Integer>[] benchTasks = new ExtractBenchTask[numThreads];
 
-        for (int i = 0; i < numThreads; i++) {
-            int offset = i/numThreads * randoms.length;
-            benchTasks[i] = new ExtractBenchTask(randoms, extrLen, offset);
-        }
-
-        for (int i = 0; i < numThreads; i++) {
-            resAccumulator.add(executor.submit(benchTasks[i]));
-        }
-
-        for (Future<Integer> result : resAccumulator) {
-            queriesExecuted += result.get();
-        }
-
-        System.out.println("Extract queries executed per second: " + queriesExecuted/MEASUREMENT_TIME);
-        executor.shutdown();
+        ThroughputEngine.Result result = new ThroughputEngine(numThreads, WARMUP_TIME, MEASUREMENT_TIME, COOLDOWN_TIME)
+            .run("extract", extractOp(mode, randoms, extrLen), randoms.length);
 
+        System.out.println("Extract queries executed per second: " + result.getQps());
+        result.writeTimeSeries(resPath);
+        return result.getQps();
     }
 
-    private class ExtractBenchTask implements Callable<Integer> {
-
-        private int queriesExecuted, startOffset, extrLen;
-        private long[] randoms;
-
-        public ExtractBenchTask(long[] randoms, int extrLen, int offset) {
-            queriesExecuted = 0;
-            this.randoms = randoms;
-            this.extrLen = extrLen;
-            startOffset = offset;
-        }
-
-        @Override
-        public Integer call() {
-
-            long until = System.currentTimeMillis() + WARMUP_TIME*1000L;
-            int i = startOffset;
-            int lim = randoms.length;
-
-            byte[] result = new byte[extrLen];
-
-            while(System.currentTimeMillis() < until) {
-                for (int j = 0; j < extrLen; j++) {
-                    result[j] = buf.get((int) randoms[i++] + j);
-                }
-                if (i == lim) {
-                    i = startOffset;
-                }
+    /**
+     * @return an op that extracts extrLen bytes at randoms[i] in the given mode, and returns the
+     * first byte copied (or, in SLICE mode, the sum of the bytes read) so the extract cannot be
+     * optimized away. Safe to run on several threads.
+     */
+    private BenchmarkOp extractOp(ExtractMode mode, final long[] randoms, final int extrLen) throws IOException {
+        final ThreadLocal<byte[]> results = new ThreadLocal<byte[]>() {
+            @Override
+            protected byte[] initialValue() {
+                return new byte[extrLen];
             }
+        };
+        switch (mode) {
+            case PER_BYTE:
+                return new BenchmarkOp() {
+                    @Override
+                    public long execute(int i) {
+                        byte[] result = results.get();
+                        for (int k = 0; k < extrLen; k++) {
+                            result[k] = buf.get(randoms[i] + k);
+                        }
+                        return result[0];
+                    }
+                };
+            case BULK_GET:
+                return bulkGetOp(buf, randoms, extrLen, results);
+            case SLICE:
+                return new BenchmarkOp() {
+                    @Override
+                    public long execute(int i) {
+                        if (!buf.isContiguous(randoms[i], extrLen)) {
+                            byte[] result = results.get();
+                            buf.get(randoms[i], result, 0, extrLen);
+                            return result[0];
+                        }
+                        ByteBuffer view = buf.slice(randoms[i], extrLen);
+                        long sum = 0;
+                        for (int k = 0; k < extrLen; k++) {
+                            sum += view.get(k);
+                        }
+                        return sum;
+                    }
+                };
+            case MAPPED:
+                return bulkGetOp(mapped(), randoms, extrLen, results);
+            default:
+                throw new IllegalArgumentException("Unknown extract mode " + mode);
+        }
+    }
 
-            until = System.currentTimeMillis() + MEASUREMENT_TIME*1000L;
-            while(System.currentTimeMillis() < until) {
-                for (int j = 0; j < extrLen; j++) {
-                    result[j] = buf.get((int) randoms[i++] + j);
-                }
-                if (i == lim) {
-                    i = startOffset;
-                }
-                queriesExecuted++;
+    private static BenchmarkOp bulkGetOp(final SegmentedBuffer data, final long[] randoms, final int extrLen,
+        final ThreadLocal<byte[]> results) {
+        return new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                byte[] result = results.get();
+                data.get(randoms[i], result, 0, extrLen);
+                return result[0];
             }
+        };
+    }
 
-            until = System.currentTimeMillis() + COOLDOWN_TIME*1000L;
-            while(System.currentTimeMillis() < until) {
-                for (int j = 0; j < extrLen; j++) {
-                    result[j] = buf.get((int) randoms[i++] + j);
-                }
-                if (i == lim) {
-                    i = startOffset;
+    private SegmentedBuffer mapped() throws IOException {
+        if (mapped == null) {
+            File localFile = new File(filePath);
+            if (!localFile.isFile() || localFile.length() != numBytes) {
+                localFile = File.createTempFile("vanilla", ".dat");
+                localFile.deleteOnExit();
+                System.out.println("No local copy of " + filePath + " to map; writing the data to " + localFile + "...");
+                byte[] chunk = new byte[COPY_CHUNK_SIZE];
+                try (OutputStream out = new FileOutputStream(localFile)) {
+                    for (long pos = 0; pos < numBytes; pos += chunk.length) {
+                        int len = (int) Math.min(chunk.length, numBytes - pos);
+                        buf.get(pos, chunk, 0, len);
+                        out.write(chunk, 0, len);
+                    }
                 }
             }
-
-            return queriesExecuted;
+            System.out.println("Mapping " + localFile + "...");
+            mapped = SegmentedBuffer.map(localFile.getPath());
         }
+        return mapped;
     }
-
 }
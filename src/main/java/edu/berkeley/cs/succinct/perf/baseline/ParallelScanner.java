@@ -0,0 +1,137 @@
+package edu.berkeley.cs.succinct.perf.baseline;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Brute-force baseline: every query scans the raw text. The text is split into one chunk per
+ * thread, scanned concurrently on a fork-join pool with the Boyer-Moore-Horspool matcher, which
+ * skips ahead by up to the pattern length on a mismatch. A chunk's scan runs pattern length - 1
+ * bytes past its end, so matches that straddle chunks are found once, in the chunk they start in.
+ */
+public class ParallelScanner implements TextIndex {
+
+    private final ByteBuffer text;
+    private final int size;
+    private final int numChunks;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param text the text, between position 0 and its limit
+     * @param pool pool that scans the chunks, one per thread
+     */
+    public ParallelScanner(ByteBuffer text, ForkJoinPool pool) {
+        this.text = text;
+        this.size = text.limit();
+        this.numChunks = pool.getParallelism();
+        this.pool = pool;
+    }
+
+    @Override
+    public String getName() {
+        return "scan (" + numChunks + " threads)";
+    }
+
+    @Override
+    public long count(final byte[] pattern) {
+        if (pattern.length == 0) {
+            return size;
+        }
+        final int[] shifts = shiftTable(pattern);
+        List<ForkJoinTask<Long>> tasks = new ArrayList<ForkJoinTask<Long>>(numChunks);
+        for (int c = 0; c < numChunks; c++) {
+            final int chunk = c;
+            tasks.add(pool.submit(() -> (long) scan(pattern, shifts, chunk, null)));
+        }
+        long count = 0;
+        for (ForkJoinTask<Long> task : tasks) {
+            count += task.join();
+        }
+        return count;
+    }
+
+    @Override
+    public long[] search(final byte[] pattern) {
+        if (pattern.length == 0) {
+            throw new IllegalArgumentException("Cannot search for an empty pattern");
+        }
+        final int[] shifts = shiftTable(pattern);
+        List<ForkJoinTask<long[]>> tasks = new ArrayList<ForkJoinTask<long[]>>(numChunks);
+        for (int c = 0; c < numChunks; c++) {
+            final int chunk = c;
+            tasks.add(pool.submit(() -> {
+                long[][] matches = { new long[16] };
+                int n = scan(pattern, shifts, chunk, matches);
+                return Arrays.copyOf(matches[0], n);
+            }));
+        }
+        long[][] chunkMatches = new long[numChunks][];
+        int total = 0;
+        for (int c = 0; c < numChunks; c++) {
+            chunkMatches[c] = tasks.get(c).join();
+            total += chunkMatches[c].length;
+        }
+        long[] matches = new long[total];
+        int i = 0;
+        for (long[] m : chunkMatches) {
+            System.arraycopy(m, 0, matches, i, m.length);
+            i += m.length;
+        }
+        return matches;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return size;
+    }
+
+    /**
+     * Finds the matches that start in a chunk.
+     * @param matches if not null, matches[0] receives the match offsets and is grown as needed
+     * @return number of matches
+     */
+    private int scan(byte[] pattern, int[] shifts, int chunk, long[][] matches) {
+        int m = pattern.length;
+        int start = (int) ((long) size * chunk / numChunks);
+        int end = (int) ((long) size * (chunk + 1) / numChunks);
+        int last = m - 1;
+        int n = 0;
+        for (int pos = start; pos < end && pos + last < size; ) {
+            byte b = text.get(pos + last);
+            if (b == pattern[last] && matchesAt(pattern, pos, last)) {
+                if (matches != null) {
+                    if (n == matches[0].length) {
+                        matches[0] = Arrays.copyOf(matches[0], 2 * n);
+                    }
+                    matches[0][n] = pos;
+                }
+                n++;
+            }
+            pos += shifts[b & 0xFF];
+        }
+        return n;
+    }
+
+    private boolean matchesAt(byte[] pattern, int pos, int len) {
+        for (int k = 0; k < len; k++) {
+            if (text.get(pos + k) != pattern[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] shiftTable(byte[] pattern) {
+        int m = pattern.length;
+        int[] shifts = new int[256];
+        Arrays.fill(shifts, m);
+        for (int k = 0; k < m - 1; k++) {
+            shifts[pattern[k] & 0xFF] = m - 1 - k;
+        }
+        return shifts;
+    }
+}
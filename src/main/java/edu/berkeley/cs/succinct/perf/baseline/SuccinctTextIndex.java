@@ -0,0 +1,46 @@
+package edu.berkeley.cs.succinct.perf.baseline;
+
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+
+/**
+ * Adapts a SuccinctFileBuffer to TextIndex, so that it runs the same queries as the baselines.
+ */
+public class SuccinctTextIndex implements TextIndex {
+
+    private final SuccinctFileBuffer buffer;
+    private final long sizeBytes;
+
+    /**
+     * @param buffer the buffer
+     * @param sizeBytes size of its serialized form, which is what it holds in memory
+     */
+    public SuccinctTextIndex(SuccinctFileBuffer buffer, long sizeBytes) {
+        this.buffer = buffer;
+        this.sizeBytes = sizeBytes;
+    }
+
+    @Override
+    public String getName() {
+        return "succinct";
+    }
+
+    @Override
+    public long count(byte[] pattern) {
+        return buffer.count(pattern);
+    }
+
+    @Override
+    public long[] search(byte[] pattern) {
+        Long[] offsets = buffer.search(pattern);
+        long[] matches = new long[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            matches[i] = offsets[i];
+        }
+        return matches;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return sizeBytes;
+    }
+}
@@ -0,0 +1,170 @@
+package edu.berkeley.cs.succinct.perf.baseline;
+
+import java.util.Arrays;
+
+/**
+ * Uncompressed index baseline: the text and its full suffix array, held as plain arrays. count
+ * and search binary search the suffix array for the range of suffixes that start with the
+ * pattern, comparing against the text directly.
+ *
+ * The suffix array is built by prefix doubling: suffixes are sorted by their first k bytes,
+ * then by their first 2k bytes as pairs of ranks, with two counting-sort passes per round.
+ * Construction needs 16 bytes per input byte on top of the text; the built index keeps 4.
+ */
+public class SuffixArrayIndex implements TextIndex {
+
+    private final byte[] text;
+    private final int[] sa;
+
+    public SuffixArrayIndex(byte[] text) {
+        this.text = text;
+        this.sa = buildSuffixArray(text);
+    }
+
+    @Override
+    public String getName() {
+        return "suffix array";
+    }
+
+    @Override
+    public long count(byte[] pattern) {
+        int lo = lowerBound(pattern);
+        return upperBound(pattern, lo) - lo;
+    }
+
+    @Override
+    public long[] search(byte[] pattern) {
+        int lo = lowerBound(pattern);
+        int hi = upperBound(pattern, lo);
+        long[] matches = new long[hi - lo];
+        for (int i = lo; i < hi; i++) {
+            matches[i - lo] = sa[i];
+        }
+        return matches;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return text.length + 4L * sa.length;
+    }
+
+    /**
+     * @return the first suffix array position whose suffix is not less than pattern
+     */
+    private int lowerBound(byte[] pattern) {
+        int lo = 0, hi = sa.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(sa[mid], pattern) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return the first suffix array position from lo whose suffix neither is less than nor
+     * starts with pattern
+     */
+    private int upperBound(byte[] pattern, int lo) {
+        int hi = sa.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(sa[mid], pattern) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Compares the suffix at pos, cut to the pattern length, with pattern.
+     * @return negative, zero or positive as the prefix is less than, equal to or greater than pattern
+     */
+    private int compare(int pos, byte[] pattern) {
+        int n = Math.min(pattern.length, text.length - pos);
+        for (int k = 0; k < n; k++) {
+            int diff = (text[pos + k] & 0xFF) - (pattern[k] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return n == pattern.length ? 0 : -1;
+    }
+
+    /**
+     * Builds the suffix array of text by prefix doubling with counting sort.
+     */
+    static int[] buildSuffixArray(byte[] text) {
+        int n = text.length;
+        int[] sa = new int[n];
+        if (n == 0) {
+            return sa;
+        }
+        int[] rank = new int[n];
+        int[] tmp = new int[n];
+        int[] counts = new int[Math.max(256, n)];
+
+        // Sort by first byte
+        int classes = 256;
+        for (int i = 0; i < n; i++) {
+            rank[i] = text[i] & 0xFF;
+            counts[rank[i]]++;
+        }
+        prefixSums(counts, classes);
+        for (int i = n - 1; i >= 0; i--) {
+            sa[--counts[rank[i]]] = i;
+        }
+
+        for (int k = 1; ; k <<= 1) {
+            // Order by second rank: suffixes shorter than k + 1 first, then by the sort so far
+            int p = 0;
+            for (int i = n - k; i < n; i++) {
+                tmp[p++] = i;
+            }
+            for (int j = 0; j < n; j++) {
+                if (sa[j] >= k) {
+                    tmp[p++] = sa[j] - k;
+                }
+            }
+
+            // Stable sort by first rank
+            Arrays.fill(counts, 0, classes, 0);
+            for (int i = 0; i < n; i++) {
+                counts[rank[i]]++;
+            }
+            prefixSums(counts, classes);
+            for (int j = n - 1; j >= 0; j--) {
+                sa[--counts[rank[tmp[j]]]] = tmp[j];
+            }
+
+            // Rank by first 2k bytes
+            tmp[sa[0]] = 0;
+            classes = 1;
+            for (int j = 1; j < n; j++) {
+                int a = sa[j - 1], b = sa[j];
+                boolean same = rank[a] == rank[b]
+                    && (a + k < n ? rank[a + k] : -1) == (b + k < n ? rank[b + k] : -1);
+                tmp[b] = same ? classes - 1 : classes++;
+            }
+            int[] swap = rank;
+            rank = tmp;
+            tmp = swap;
+            if (classes == n || k >= n) {
+                return sa;
+            }
+        }
+    }
+
+    private static void prefixSums(int[] counts, int len) {
+        int sum = 0;
+        for (int i = 0; i < len; i++) {
+            sum += counts[i];
+            counts[i] = sum;
+        }
+    }
+}
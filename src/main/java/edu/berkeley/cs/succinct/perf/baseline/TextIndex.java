@@ -0,0 +1,25 @@
+package edu.berkeley.cs.succinct.perf.baseline;
+
+/**
+ * Something that can answer count and search queries over a text, so that SysBench can run
+ * the same queries through Succinct and through the baselines.
+ */
+public interface TextIndex {
+
+    String getName();
+
+    /**
+     * @return number of occurrences of pattern in the text
+     */
+    long count(byte[] pattern);
+
+    /**
+     * @return offsets of all occurrences of pattern in the text, in no particular order
+     */
+    long[] search(byte[] pattern);
+
+    /**
+     * @return bytes of memory the index holds, text included
+     */
+    long memoryBytes();
+}
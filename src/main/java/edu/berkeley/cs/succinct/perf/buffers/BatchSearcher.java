@@ -0,0 +1,232 @@
+package edu.berkeley.cs.succinct.perf.buffers;
+
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Answers count/search queries for a batch of patterns at once over a SuccinctFileBuffer.
+ *
+ * Backward search matches a pattern from its last byte to its first, narrowing a range of
+ * suffix array indices at every step. The batch is therefore organized into a trie over the
+ * reversed patterns, i.e. a suffix trie: patterns sharing a suffix share the trie path for
+ * it, and each trie edge costs one backward-search step (two binary searches over NPA) no
+ * matter how many patterns pass through it. Identical patterns are answered once.
+ *
+ * The searcher only relies on the buffer's public lookupNPA/lookupSA/extract. The first-byte
+ * boundaries of the suffix array (the column offsets) are derived once on construction.
+ */
+public class BatchSearcher {
+
+    private final SuccinctFileBuffer buffer;
+    private final long size;
+
+    // Suffix array indices [columnStart[c], columnEnd[c]) start with byte c; empty if equal
+    private final long[] columnStart = new long[256];
+    private final long[] columnEnd = new long[256];
+
+    public BatchSearcher(SuccinctFileBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.getOriginalSize();
+        computeColumns();
+    }
+
+    /**
+     * Counts the occurrences of each pattern.
+     * @param patterns batch of patterns
+     * @return number of occurrences of patterns[i] at index i
+     */
+    public long[] countAll(byte[][] patterns) {
+        final long[] counts = new long[patterns.length];
+        search(patterns, new Visitor() {
+            @Override
+            public void visit(int[] patternIds, int numIds, long sp, long ep) {
+                for (int j = 0; j < numIds; j++) {
+                    counts[patternIds[j]] = ep - sp + 1;
+                }
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Finds the offsets of all occurrences of each pattern. Offsets are returned in suffix
+     * array order; identical patterns share the same result array.
+     * @param patterns batch of patterns
+     * @return offsets of the occurrences of patterns[i] at index i
+     */
+    public long[][] searchAll(byte[][] patterns) {
+        final long[][] results = new long[patterns.length][];
+        search(patterns, new Visitor() {
+            @Override
+            public void visit(int[] patternIds, int numIds, long sp, long ep) {
+                long[] offsets = new long[(int) (ep - sp + 1)];
+                for (long i = sp; i <= ep; i++) {
+                    offsets[(int) (i - sp)] = buffer.lookupSA(i);
+                }
+                for (int j = 0; j < numIds; j++) {
+                    results[patternIds[j]] = offsets;
+                }
+            }
+        });
+        long[] empty = new long[0];
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = empty;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Computes the suffix array range of a single pattern.
+     * @param pattern the pattern
+     * @param range output; range[0] and range[1] are set to the first and last suffix array
+     *              index of the matches
+     * @return true if the pattern occurs at least once
+     */
+    public boolean getRange(byte[] pattern, long[] range) {
+        if (pattern.length == 0) {
+            return false;
+        }
+        int c = pattern[pattern.length - 1] & 0xFF;
+        long sp = columnStart[c], ep = columnEnd[c] - 1;
+        for (int k = pattern.length - 2; k >= 0 && sp <= ep; k--) {
+            c = pattern[k] & 0xFF;
+            long newSp = lowerBoundNPA(columnStart[c], columnEnd[c], sp);
+            long newEp = lowerBoundNPA(newSp, columnEnd[c], ep + 1) - 1;
+            sp = newSp;
+            ep = newEp;
+        }
+        range[0] = sp;
+        range[1] = ep;
+        return sp <= ep;
+    }
+
+    private interface Visitor {
+        /**
+         * Called once per distinct pattern that occurs at least once.
+         * @param patternIds ids of the patterns equal to it
+         * @param numIds number of valid entries in patternIds
+         * @param sp first suffix array index of the matches
+         * @param ep last suffix array index of the matches
+         */
+        void visit(int[] patternIds, int numIds, long sp, long ep);
+    }
+
+    private static class TrieNode {
+        byte[] labels = new byte[0];
+        TrieNode[] children = new TrieNode[0];
+        int[] patternIds;
+        int numIds;
+
+        TrieNode child(byte label) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == label) {
+                    return children[i];
+                }
+            }
+            TrieNode node = new TrieNode();
+            labels = Arrays.copyOf(labels, labels.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            labels[labels.length - 1] = label;
+            children[children.length - 1] = node;
+            return node;
+        }
+
+        void addPattern(int id) {
+            if (patternIds == null) {
+                patternIds = new int[1];
+            } else if (numIds == patternIds.length) {
+                patternIds = Arrays.copyOf(patternIds, numIds * 2);
+            }
+            patternIds[numIds++] = id;
+        }
+    }
+
+    private void search(byte[][] patterns, Visitor visitor) {
+        TrieNode root = new TrieNode();
+        for (int id = 0; id < patterns.length; id++) {
+            byte[] pattern = patterns[id];
+            if (pattern.length == 0) {
+                continue;
+            }
+            TrieNode node = root;
+            for (int k = pattern.length - 1; k >= 0; k--) {
+                node = node.child(pattern[k]);
+            }
+            node.addPattern(id);
+        }
+
+        for (int i = 0; i < root.labels.length; i++) {
+            int c = root.labels[i] & 0xFF;
+            if (columnStart[c] < columnEnd[c]) {
+                visit(root.children[i], columnStart[c], columnEnd[c] - 1, visitor);
+            }
+        }
+    }
+
+    private void visit(TrieNode node, long sp, long ep, Visitor visitor) {
+        if (node.numIds > 0) {
+            visitor.visit(node.patternIds, node.numIds, sp, ep);
+        }
+        for (int i = 0; i < node.labels.length; i++) {
+            int c = node.labels[i] & 0xFF;
+            long newSp = lowerBoundNPA(columnStart[c], columnEnd[c], sp);
+            long newEp = lowerBoundNPA(newSp, columnEnd[c], ep + 1) - 1;
+            if (newSp <= newEp) {
+                visit(node.children[i], newSp, newEp, visitor);
+            }
+        }
+    }
+
+    /**
+     * NPA is increasing within a column, so the suffixes in column c whose successors lie in
+     * [sp, ep] form a contiguous range that can be found by binary search.
+     * @return the first index in [lo, hi) with NPA >= value, or hi if there is none
+     */
+    private long lowerBoundNPA(long lo, long hi, long value) {
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (buffer.lookupNPA(mid) < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int firstByte(long saIndex) {
+        return buffer.extract(buffer.lookupSA(saIndex), 1)[0] & 0xFF;
+    }
+
+    /**
+     * Suffixes starting with the same byte are contiguous in the suffix array, so each column
+     * end is found by galloping from its start.
+     */
+    private void computeColumns() {
+        long i = 0;
+        while (i < size) {
+            int c = firstByte(i);
+            long lo = i, step = 1;
+            while (lo + step < size && firstByte(lo + step) == c) {
+                lo += step;
+                step <<= 1;
+            }
+            long hi = Math.min(lo + step, size);
+            // Invariant: firstByte(lo) == c, and hi is either size or the start of another column
+            while (hi - lo > 1) {
+                long mid = (lo + hi) >>> 1;
+                if (firstByte(mid) == c) {
+                    lo = mid;
+                } else {
+                    hi = mid;
+                }
+            }
+            columnStart[c] = i;
+            columnEnd[c] = hi;
+            i = hi;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package edu.berkeley.cs.succinct.perf.buffers;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+
+import java.util.Arrays;
+
+/**
+ * A concurrent, memory-bounded result cache in front of SuccinctFileBuffer count/search.
+ *
+ * Admission and eviction use Caffeine's W-TinyLFU policy: a small LRU window admits new
+ * entries, and an entry only displaces a main-region victim if its estimated access frequency
+ * (from a count-min sketch) is higher. One-off patterns therefore cannot flush frequent ones,
+ * which suits the skewed query logs we replay. The budget is in bytes: cached offsets count 8
+ * bytes each, plus the pattern and a fixed per-entry overhead.
+ */
+public class CachedSuccinctFileBuffer {
+
+    // Approximate per-entry cost of the key/value objects and Caffeine's node
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final byte COUNT = 0;
+    private static final byte SEARCH = 1;
+
+    private final SuccinctFileBuffer buffer;
+    private final Cache<Key, Object> cache;
+    private final long maxBytes;
+
+    public CachedSuccinctFileBuffer(SuccinctFileBuffer buffer, long maxBytes) {
+        this.buffer = buffer;
+        this.maxBytes = maxBytes;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher(new Weigher<Key, Object>() {
+                @Override
+                public int weigh(Key key, Object value) {
+                    long bytes = ENTRY_OVERHEAD + key.pattern.length;
+                    if (value instanceof long[]) {
+                        bytes += 8L * ((long[]) value).length;
+                    } else {
+                        bytes += 8;
+                    }
+                    return (int) Math.min(bytes, Integer.MAX_VALUE);
+                }
+            })
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Counts the occurrences of a pattern, from the cache if its count is cached.
+     * @param pattern the pattern
+     * @return number of occurrences
+     */
+    public long count(byte[] pattern) {
+        Long cached = (Long) cache.getIfPresent(new Key(COUNT, pattern));
+        if (cached != null) {
+            return cached;
+        }
+        long count = buffer.count(pattern);
+        cache.put(new Key(COUNT, pattern.clone()), count);
+        return count;
+    }
+
+    /**
+     * Searches for a pattern, from the cache if its result is cached. The returned array is
+     * shared with the cache and must not be modified.
+     * @param pattern the pattern
+     * @return offsets of the occurrences
+     */
+    public long[] search(byte[] pattern) {
+        Key key = new Key(SEARCH, pattern);
+        long[] offsets = (long[]) cache.getIfPresent(key);
+        if (offsets != null) {
+            return offsets;
+        }
+        // Computed outside the cache so that slow searches do not block other keys
+        Long[] results = buffer.search(pattern);
+        offsets = new long[results.length];
+        for (int i = 0; i < results.length; i++) {
+            offsets[i] = results[i];
+        }
+        cache.put(new Key(SEARCH, pattern.clone()), offsets);
+        return offsets;
+    }
+
+    public byte[] extract(long offset, int length) {
+        return buffer.extract(offset, length);
+    }
+
+    public SuccinctFileBuffer getBuffer() {
+        return buffer;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return hit, miss and eviction counts since the cache was created
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return bytes currently accounted to cached entries
+     */
+    public long cachedBytes() {
+        cache.cleanUp();
+        return cache.policy().eviction().get().weightedSize().getAsLong();
+    }
+
+    private static final class Key {
+        private final byte op;
+        private final byte[] pattern;
+        private final int hash;
+
+        Key(byte op, byte[] pattern) {
+            this.op = op;
+            this.pattern = pattern;
+            this.hash = 31 * Arrays.hashCode(pattern) + op;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return op == other.op && hash == other.hash && Arrays.equals(pattern, other.pattern);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package edu.berkeley.cs.succinct.perf.buffers;
+
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+
+import java.nio.LongBuffer;
+
+/**
+ * Search over a SuccinctFileBuffer that writes match offsets into caller-supplied primitive
+ * storage, instead of returning a boxed Long[] per query as SuccinctFileBuffer.search does.
+ *
+ * A search finds the suffix array range of the pattern with BatchSearcher.getRange and opens
+ * a Cursor over it; offsets are only looked up (with lookupSA) as the cursor fills a long[] or
+ * LongBuffer, so results larger than the caller's storage are drained in several fills. A
+ * cursor can be reused for any number of searches, so a query loop that reuses its cursor and
+ * output storage allocates nothing per query. Offsets come in suffix array order.
+ */
+public class PrimitiveSearcher {
+
+    private final SuccinctFileBuffer buffer;
+    private final BatchSearcher searcher;
+
+    public PrimitiveSearcher(SuccinctFileBuffer buffer) {
+        this.buffer = buffer;
+        this.searcher = new BatchSearcher(buffer);
+    }
+
+    /**
+     * The matches of one search, and how many of them have been read.
+     * Not thread-safe; use one cursor per thread.
+     */
+    public static class Cursor {
+        private final long[] range = new long[2];
+        private SuccinctFileBuffer buffer;
+        private long next;
+        private long end;
+
+        /**
+         * @return total number of matches
+         */
+        public long size() {
+            return end - range[0];
+        }
+
+        /**
+         * @return number of matches not yet read
+         */
+        public long remaining() {
+            return end - next;
+        }
+
+        public boolean hasRemaining() {
+            return next < end;
+        }
+
+        /**
+         * Reads matches into dst[off..off+len).
+         * @return number of offsets written; less than len only when the cursor is exhausted
+         */
+        public int fill(long[] dst, int off, int len) {
+            int n = (int) Math.min(len, remaining());
+            for (int i = 0; i < n; i++) {
+                dst[off + i] = buffer.lookupSA(next++);
+            }
+            return n;
+        }
+
+        /**
+         * Reads matches into dst from index 0.
+         * @return number of offsets written
+         */
+        public int fill(long[] dst) {
+            return fill(dst, 0, dst.length);
+        }
+
+        /**
+         * Reads as many matches as fit into dst (e.g. an off-heap buffer), advancing its position.
+         * @return number of offsets written
+         */
+        public int fill(LongBuffer dst) {
+            int n = (int) Math.min(dst.remaining(), remaining());
+            for (int i = 0; i < n; i++) {
+                dst.put(buffer.lookupSA(next++));
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Counts the matches of pattern; none of them is looked up.
+     * @param pattern the pattern
+     * @param cursor cursor to reuse, or null to allocate one; left at the first match
+     * @return number of matches
+     */
+    public long count(byte[] pattern, Cursor cursor) {
+        return search(pattern, cursor).size();
+    }
+
+    /**
+     * Searches for pattern and positions cursor at its first match.
+     * @param pattern the pattern
+     * @param cursor cursor to reuse, or null to allocate one
+     * @return the cursor
+     */
+    public Cursor search(byte[] pattern, Cursor cursor) {
+        if (cursor == null) {
+            cursor = new Cursor();
+        }
+        cursor.buffer = buffer;
+        if (searcher.getRange(pattern, cursor.range)) {
+            cursor.next = cursor.range[0];
+            cursor.end = cursor.range[1] + 1;
+        } else {
+            cursor.range[0] = 0;
+            cursor.next = 0;
+            cursor.end = 0;
+        }
+        return cursor;
+    }
+}
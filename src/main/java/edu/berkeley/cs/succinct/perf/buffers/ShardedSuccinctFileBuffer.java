@@ -0,0 +1,196 @@
+package edu.berkeley.cs.succinct.perf.buffers;
+
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+import edu.berkeley.cs.succinct.perf.build.PartitionManifest;
+import edu.berkeley.cs.succinct.perf.storage.StorageBackend;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A dataset held as several SuccinctFileBuffers, one per contiguous shard of the input, that
+ * is queried as if it were one buffer.
+ *
+ * count and search run on every shard at once on a fork-join pool, and offsets are rebased to
+ * positions in the whole input. A match that crosses the end of a shard is in no shard's index;
+ * such matches are found by extracting the pattern length - 1 bytes on either side of every
+ * shard boundary and scanning that window, while the shards are being queried. extract reads
+ * across shard boundaries as needed.
+ */
+public class ShardedSuccinctFileBuffer {
+
+    private final SuccinctFileBuffer[] shards;
+    // Offset of each shard's first byte in the input; offsets[shards.length] is the input size
+    private final long[] offsets;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param shards buffers of the shards, in input order
+     * @param lengths number of input bytes in each shard; empty shards are skipped
+     * @param pool pool that queries the shards
+     */
+    public ShardedSuccinctFileBuffer(SuccinctFileBuffer[] shards, long[] lengths, ForkJoinPool pool) {
+        if (shards.length != lengths.length) {
+            throw new IllegalArgumentException("Need one length per shard");
+        }
+        // An empty shard holds no matches, and a boundary window starting at its end would lie
+        // outside the input
+        List<SuccinctFileBuffer> nonEmpty = new ArrayList<SuccinctFileBuffer>(shards.length);
+        List<Long> nonEmptyLengths = new ArrayList<Long>(shards.length);
+        for (int s = 0; s < shards.length; s++) {
+            if (lengths[s] < 0) {
+                throw new IllegalArgumentException("Shard " + s + " has negative length " + lengths[s]);
+            }
+            if (lengths[s] > 0) {
+                nonEmpty.add(shards[s]);
+                nonEmptyLengths.add(lengths[s]);
+            }
+        }
+        if (nonEmpty.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one non-empty shard");
+        }
+        this.shards = nonEmpty.toArray(new SuccinctFileBuffer[0]);
+        this.offsets = new long[this.shards.length + 1];
+        for (int s = 0; s < this.shards.length; s++) {
+            offsets[s + 1] = offsets[s] + nonEmptyLengths.get(s);
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Opens the partitions of a partitioned build as shards.
+     * @param manifest manifest of the build
+     * @param backend backend the partitions are read from
+     * @param pool pool that queries the shards
+     * @return the sharded buffer
+     * @throws IOException
+     */
+    public static ShardedSuccinctFileBuffer open(PartitionManifest manifest, StorageBackend backend,
+        ForkJoinPool pool) throws IOException {
+        List<PartitionManifest.Partition> partitions = manifest.getPartitions();
+        SuccinctFileBuffer[] shards = new SuccinctFileBuffer[partitions.size()];
+        long[] lengths = new long[partitions.size()];
+        for (int s = 0; s < shards.length; s++) {
+            shards[s] = backend.openFileBuffer(partitions.get(s).getPath());
+            lengths[s] = partitions.get(s).getLength();
+        }
+        return new ShardedSuccinctFileBuffer(shards, lengths, pool);
+    }
+
+    public int getNumShards() {
+        return shards.length;
+    }
+
+    /**
+     * @return size of the input in bytes
+     */
+    public long getSize() {
+        return offsets[shards.length];
+    }
+
+    public long count(final byte[] pattern) {
+        List<ForkJoinTask<Long>> tasks = new ArrayList<ForkJoinTask<Long>>(shards.length);
+        for (final SuccinctFileBuffer shard : shards) {
+            tasks.add(pool.submit(() -> shard.count(pattern)));
+        }
+        long count = spanningMatches(pattern).size();
+        for (ForkJoinTask<Long> task : tasks) {
+            count += task.join();
+        }
+        return count;
+    }
+
+    /**
+     * @return offsets of all matches in the input, shard by shard; within a shard in the order
+     * SuccinctFileBuffer.search returns them, followed by the matches that cross shard boundaries
+     */
+    public Long[] search(final byte[] pattern) {
+        List<ForkJoinTask<Long[]>> tasks = new ArrayList<ForkJoinTask<Long[]>>(shards.length);
+        for (final SuccinctFileBuffer shard : shards) {
+            tasks.add(pool.submit(() -> shard.search(pattern)));
+        }
+        List<Long> spanning = spanningMatches(pattern);
+
+        Long[][] shardResults = new Long[shards.length][];
+        int total = spanning.size();
+        for (int s = 0; s < shards.length; s++) {
+            shardResults[s] = tasks.get(s).join();
+            total += shardResults[s].length;
+        }
+        Long[] results = new Long[total];
+        int i = 0;
+        for (int s = 0; s < shards.length; s++) {
+            for (Long offset : shardResults[s]) {
+                results[i++] = offsets[s] + offset;
+            }
+        }
+        for (Long offset : spanning) {
+            results[i++] = offset;
+        }
+        return results;
+    }
+
+    /**
+     * @param offset offset in the input
+     * @param len number of bytes; fewer are returned at the end of the input
+     * @return the bytes at offset
+     */
+    public byte[] extract(long offset, int len) {
+        if (offset < 0 || offset >= getSize()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside an input of " + getSize() + " bytes");
+        }
+        len = (int) Math.min(len, getSize() - offset);
+        byte[] result = new byte[len];
+        int s = shardOf(offset);
+        int copied = 0;
+        while (copied < len) {
+            long shardOffset = offset + copied - offsets[s];
+            int n = (int) Math.min(len - copied, offsets[s + 1] - offsets[s] - shardOffset);
+            System.arraycopy(shards[s].extract(shardOffset, n), 0, result, copied, n);
+            copied += n;
+            s++;
+        }
+        return result;
+    }
+
+    private int shardOf(long offset) {
+        int i = Arrays.binarySearch(offsets, offset);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * Finds the matches that start in one shard and end in a later one. Each is reported once,
+     * at the boundary of the shard it starts in.
+     */
+    private List<Long> spanningMatches(byte[] pattern) {
+        List<Long> matches = new ArrayList<Long>();
+        int m = pattern.length;
+        if (m < 2) {
+            return matches;
+        }
+        for (int s = 0; s < shards.length - 1; s++) {
+            long boundary = offsets[s + 1];
+            long start = Math.max(offsets[s], boundary - (m - 1));
+            byte[] window = extract(start, (int) (boundary - start) + m - 1);
+            for (int j = 0; j < boundary - start && j + m <= window.length; j++) {
+                if (matchesAt(window, j, pattern)) {
+                    matches.add(start + j);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static boolean matchesAt(byte[] data, int pos, byte[] pattern) {
+        for (int k = 0; k < pattern.length; k++) {
+            if (data[pos + k] != pattern[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
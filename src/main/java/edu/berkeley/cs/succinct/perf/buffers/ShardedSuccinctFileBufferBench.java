@@ -0,0 +1,172 @@
+package edu.berkeley.cs.succinct.perf.buffers;
+
+import edu.berkeley.cs.succinct.perf.BenchmarkOp;
+import edu.berkeley.cs.succinct.perf.BenchmarkUtils;
+import edu.berkeley.cs.succinct.perf.LatencyRecorder;
+import edu.berkeley.cs.succinct.perf.ThroughputEngine;
+import edu.berkeley.cs.succinct.perf.build.PartitionManifest;
+import edu.berkeley.cs.succinct.perf.storage.StorageBackend;
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+public class ShardedSuccinctFileBufferBench {
+    private static final int WARMUP_QUERIES = 1000;
+    private static final int MAX_QUERIES = 10000;
+    private static final int CHECK_QUERIES = 100;
+
+    private static final int WARMUP_TIME = 30; // seconds
+    private static final int COOLDOWN_TIME = 10; // seconds
+    private static final int MEASUREMENT_TIME = 60; // seconds
+
+    private ShardedSuccinctFileBuffer buffer;
+
+    public ShardedSuccinctFileBufferBench(StorageBackend backend, String manifestPath, ForkJoinPool pool)
+        throws IOException {
+        buffer = ShardedSuccinctFileBuffer.open(PartitionManifest.read(manifestPath), backend, pool);
+        System.out.println("Opened " + buffer.getNumShards() + " shards (" + buffer.getSize() + " bytes) from "
+            + manifestPath);
+    }
+
+    public Histogram benchCountLatency(String queryFile, String resPath) throws IOException {
+        System.out.println("Benchmarking sharded count latency...");
+
+        final byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        return benchLatency("count", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.count(queries[i]);
+            }
+        }, queries.length, resPath);
+    }
+
+    public Histogram benchSearchLatency(String queryFile, String resPath) throws IOException {
+        System.out.println("Benchmarking sharded search latency...");
+
+        final byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        return benchLatency("search", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.search(queries[i]).length;
+            }
+        }, queries.length, resPath);
+    }
+
+    public Histogram benchExtractLatency(String resPath, final int extrLen) throws IOException {
+        System.out.println("Benchmarking sharded extract latency...");
+
+        final long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getSize() - extrLen);
+        return benchLatency("extract", new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.extract(randoms[i], extrLen).length;
+            }
+        }, randoms.length, resPath);
+    }
+
+    public ThroughputEngine.Result benchSearchThroughput(String queryFile, String resPath, int numThreads)
+        throws IOException, InterruptedException, ExecutionException {
+
+        System.out.println("Benchmarking sharded search throughput with " + numThreads + " threads...");
+        final byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+
+        BenchmarkOp op = new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.search(queries[i]).length;
+            }
+        };
+        ThroughputEngine.Result result = new ThroughputEngine(numThreads, WARMUP_TIME, MEASUREMENT_TIME, COOLDOWN_TIME)
+            .run("search", op, queries.length);
+
+        System.out.println("Search queries executed per second: " + result.getQps());
+        result.writeTimeSeries(resPath);
+        return result;
+    }
+
+    /**
+     * Runs count, search and extract latency and search throughput over each of several
+     * partitioned builds of the same input, and tabulates them against the number of shards.
+     * Counts are checked against those of the first build, since every build must give the same
+     * answers however the input was split; the run fails on the first difference.
+     * @param backend backend the partitions are read from
+     * @param manifestPaths manifests of the builds
+     * @param queryFile path to the query file
+     * @param resPath prefix of the output paths
+     * @param extrLen length of extract queries
+     * @param numThreads number of threads for the throughput benchmark
+     */
+    public static void benchShardScaling(StorageBackend backend, String[] manifestPaths, String queryFile,
+        String resPath, int extrLen, int numThreads) throws IOException, InterruptedException, ExecutionException {
+
+        ForkJoinPool pool = new ForkJoinPool();
+        byte[][] checkQueries = BenchmarkUtils.readQueryBytes(queryFile, CHECK_QUERIES);
+        long[] expectedCounts = null;
+
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath + "_shards.csv"));
+        bufferedWriter.write("shards,count_p50_ns,count_p99_ns,search_p50_ns,search_p99_ns,extract_p50_ns,"
+            + "extract_p99_ns,search_qps\n");
+        for (String manifestPath : manifestPaths) {
+            ShardedSuccinctFileBufferBench bench = new ShardedSuccinctFileBufferBench(backend, manifestPath, pool);
+            int shards = bench.buffer.getNumShards();
+
+            long[] counts = new long[checkQueries.length];
+            for (int i = 0; i < checkQueries.length; i++) {
+                counts[i] = bench.buffer.count(checkQueries[i]);
+            }
+            if (expectedCounts == null) {
+                expectedCounts = counts;
+            } else {
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] != expectedCounts[i]) {
+                        bufferedWriter.close();
+                        pool.shutdown();
+                        throw new IllegalStateException(shards + " shards count " + counts[i] + " matches for query "
+                            + i + "; the first build counts " + expectedCounts[i]);
+                    }
+                }
+            }
+
+            String shardPath = resPath + "_s" + shards;
+            Histogram count = bench.benchCountLatency(queryFile, shardPath + "_count");
+            Histogram search = bench.benchSearchLatency(queryFile, shardPath + "_search");
+            Histogram extract = bench.benchExtractLatency(shardPath + "_extract", extrLen);
+            double qps = bench.benchSearchThroughput(queryFile, shardPath + "_search_thput", numThreads).getQps();
+
+            bufferedWriter.write(shards + "," + count.getValueAtPercentile(50) + "," + count.getValueAtPercentile(99)
+                + "," + search.getValueAtPercentile(50) + "," + search.getValueAtPercentile(99) + ","
+                + extract.getValueAtPercentile(50) + "," + extract.getValueAtPercentile(99) + "," + qps + "\n");
+        }
+        bufferedWriter.close();
+        pool.shutdown();
+    }
+
+    private Histogram benchLatency(String name, BenchmarkOp op, int numQueries, String resPath) throws IOException {
+        LatencyRecorder recorder = new LatencyRecorder(name);
+        long[] values = new long[numQueries];
+        long[] latencies = new long[numQueries];
+
+        long sum = 0;
+        for (int i = 0; i < Math.min(numQueries, WARMUP_QUERIES); i++) {
+            sum += op.execute(i);
+        }
+
+        System.out.println("Warmup complete: Checksum = " + sum);
+
+        for (int i = 0; i < numQueries; i++) {
+            long start = System.nanoTime();
+            values[i] = op.execute(i);
+            long end = System.nanoTime();
+            latencies[i] = end - start;
+            recorder.record(end - start);
+        }
+
+        recorder.report(resPath);
+        BenchmarkUtils.writeResults(resPath, values, latencies);
+        return recorder.getHistogram();
+    }
+}
@@ -3,10 +3,9 @@ package edu.berkeley.cs.succinct.perf.buffers;
 import edu.berkeley.cs.succinct.StorageMode;
 import edu.berkeley.cs.succinct.buffers.SuccinctBuffer;
 import edu.berkeley.cs.succinct.perf.BenchmarkUtils;
-import edu.berkeley.cs.succinct.perf.TachyonUtil;
+import edu.berkeley.cs.succinct.perf.LatencyRecorder;
+import edu.berkeley.cs.succinct.perf.storage.StorageBackend;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 
 public class SuccinctBufferBench {
@@ -18,8 +17,8 @@ public class SuccinctBufferBench {
         buffer = new SuccinctBuffer(serializedDataPath, storageMode);
     }
 
-    public SuccinctBufferBench(String tachyonMasterLoc, String filePath) {
-        buffer = TachyonUtil.getBuffer(tachyonMasterLoc, filePath);
+    public SuccinctBufferBench(StorageBackend backend, String filePath) throws IOException {
+        buffer = backend.openBuffer(filePath);
     }
 
     public void benchLookupNPA(String resPath) throws IOException {
@@ -27,8 +26,8 @@ public class SuccinctBufferBench {
 
         long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize());
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("lookupNPA");
+        long[] latencies = new long[randoms.length];
 
         long sum = 0, qCount = 0;
         for(long i: randoms) {
@@ -39,17 +38,17 @@ public class SuccinctBufferBench {
 
         System.out.println("Warmup complete: Checksum = " + sum);
 
+        int q = 0;
         for(long i: randoms) {
             long start = System.nanoTime();
             buffer.lookupNPA(i);
             long end = System.nanoTime();
-            bufferedWriter.write(i + "\t" + (end - start) + "\n");
-            totalTime += (end - start);
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / randoms.length;
-        System.out.println("Average time per NPA lookup: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        BenchmarkUtils.writeResults(resPath, randoms, latencies);
     }
 
     public void benchLookupSA(String resPath) throws IOException {
@@ -57,8 +56,8 @@ public class SuccinctBufferBench {
 
         long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize());
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("lookupSA");
+        long[] latencies = new long[randoms.length];
 
         long sum = 0, qCount = 0;
         for(long i: randoms) {
@@ -69,17 +68,17 @@ public class SuccinctBufferBench {
 
         System.out.println("Warmup complete: Checksum = " + sum);
 
+        int q = 0;
         for(long i: randoms) {
             long start = System.nanoTime();
             buffer.lookupSA(i);
             long end = System.nanoTime();
-            bufferedWriter.write(i + "\t" + (end - start) + "\n");
-            totalTime += (end - start);
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / randoms.length;
-        System.out.println("Average time per SA lookup: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        BenchmarkUtils.writeResults(resPath, randoms, latencies);
     }
 
     public void benchLookupISA(String resPath) throws IOException {
@@ -87,8 +86,8 @@ public class SuccinctBufferBench {
 
         long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize());
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("lookupISA");
+        long[] latencies = new long[randoms.length];
 
         long sum = 0, qCount = 0;
         for(long i: randoms) {
@@ -99,17 +98,17 @@ public class SuccinctBufferBench {
 
         System.out.println("Warmup complete: Checksum = " + sum);
 
+        int q = 0;
         for(long i: randoms) {
             long start = System.nanoTime();
             buffer.lookupISA(i);
             long end = System.nanoTime();
-            bufferedWriter.write(i + "\t" + (end - start) + "\n");
-            totalTime += (end - start);
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / randoms.length;
-        System.out.println("Average time per ISA lookup: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        BenchmarkUtils.writeResults(resPath, randoms, latencies);
     }
 
     public void benchAll(String resPath) throws IOException {
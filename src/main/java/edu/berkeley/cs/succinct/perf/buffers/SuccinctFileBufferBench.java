@@ -1,95 +1,118 @@
 package edu.berkeley.cs.succinct.perf.buffers;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import edu.berkeley.cs.succinct.StorageMode;
 import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+import edu.berkeley.cs.succinct.perf.BenchmarkOp;
 import edu.berkeley.cs.succinct.perf.BenchmarkUtils;
-import edu.berkeley.cs.succinct.perf.TachyonUtil;
+import edu.berkeley.cs.succinct.perf.ConcurrencyDriver;
+import edu.berkeley.cs.succinct.perf.LatencyRecorder;
+import edu.berkeley.cs.succinct.perf.OpenLoopDriver;
+import edu.berkeley.cs.succinct.perf.ProcessStats;
+import edu.berkeley.cs.succinct.perf.QueryCorpus;
+import edu.berkeley.cs.succinct.perf.ScalabilityReport;
+import edu.berkeley.cs.succinct.perf.ThroughputEngine;
+import edu.berkeley.cs.succinct.perf.storage.StorageBackend;
+import edu.berkeley.cs.succinct.perf.workload.KeyGenerator;
+import edu.berkeley.cs.succinct.perf.workload.OperationMix;
+import edu.berkeley.cs.succinct.perf.workload.Workload;
+import org.HdrHistogram.Histogram;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
 
 public class SuccinctFileBufferBench {
     private static final int WARMUP_QUERIES = 10000;
     private static final int MAX_QUERIES = 100000;
     private static final int MAX_THR_EXT_QUERIES = 100000000;
+    private static final int MAX_MIXED_QUERIES = 1000000;
+    // Offsets per fill of the reused primitive search output
+    private static final int PRIMITIVE_SEARCH_CAPACITY = 1 << 16;
 
     private static final int WARMUP_TIME = 300; // seconds
     private static final int COOLDOWN_TIME = 300; // seconds
     private static final int MEASUREMENT_TIME = 600; // seconds
 
+    private static final int OPEN_LOOP_WARMUP_TIME = 60; // seconds
+    private static final int OPEN_LOOP_MEASUREMENT_TIME = 300; // seconds
+
     private SuccinctFileBuffer buffer;
 
     public SuccinctFileBufferBench(String serializedDataPath, StorageMode storageMode) {
         buffer = new SuccinctFileBuffer(serializedDataPath, storageMode);
     }
 
-    public SuccinctFileBufferBench(String tachyonMasterLoc, String filePath) {
-        buffer = TachyonUtil.getFileBuffer(tachyonMasterLoc, filePath);
+    public SuccinctFileBufferBench(StorageBackend backend, String filePath) throws IOException {
+        buffer = backend.openFileBuffer(filePath);
     }
 
     public void benchCountLatency(String queryFile, String resPath) throws IOException {
         System.out.println("Benchmarking count latency...");
 
-        String[] queries = BenchmarkUtils.readQueryFile(queryFile, MAX_QUERIES);
+        QueryCorpus corpus = BenchmarkUtils.readQueryCorpus(queryFile, MAX_QUERIES);
+        byte[][] queries = corpus.toByteArrays();
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("count");
+        long[] counts = new long[queries.length];
+        long[] latencies = new long[queries.length];
 
         long sum = 0, qCount = 0;
-        for(String query: queries) {
-            sum += buffer.count(query.getBytes());
+        for(byte[] query: queries) {
+            sum += buffer.count(query);
             qCount++;
             if(qCount >= WARMUP_QUERIES) break;
         }
 
         System.out.println("Warmup complete: Checksum = " + sum);
 
-        for(String query: queries) {
-            byte[] queryBytes = query.getBytes();
+        int q = 0;
+        for(byte[] query: queries) {
             long start = System.nanoTime();
-            long count = buffer.count(queryBytes);
+            long count = buffer.count(query);
             long end = System.nanoTime();
-            bufferedWriter.write(count + "\t" + (end - start) + "\n");
-            totalTime += (end - start);
+            counts[q] = count;
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / queries.length;
-        System.out.println("Average time per count query: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        BenchmarkUtils.checkExpectedCounts(corpus, counts);
+        BenchmarkUtils.writeResults(resPath, counts, latencies);
     }
 
     public void benchSearchLatency(String queryFile, String resPath) throws IOException {
         System.out.println("Benchmarking search latency...");
 
-        String[] queries = BenchmarkUtils.readQueryFile(queryFile, MAX_QUERIES);
+        byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("search");
+        long[] counts = new long[queries.length];
+        long[] latencies = new long[queries.length];
 
         long sum = 0, qCount = 0;
-        for(String query: queries) {
-            sum += buffer.search(query.getBytes()).length;
+        for(byte[] query: queries) {
+            sum += buffer.search(query).length;
             qCount++;
             if(qCount >= WARMUP_QUERIES) break;
         }
 
         System.out.println("Warmup complete: Checksum = " + sum);
 
-        for(String query: queries) {
-            byte[] queryBytes = query.getBytes();
+        int q = 0;
+        for(byte[] query: queries) {
             long start = System.nanoTime();
-            Long[] results = buffer.search(queryBytes);
+            Long[] results = buffer.search(query);
             long end = System.nanoTime();
-            bufferedWriter.write(results.length + "\t" + (end - start) + "\n");
-            //bufferedWriter.write((end - start) + "\n");
-            totalTime += (end - start);
+            counts[q] = results.length;
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / queries.length;
-        System.out.println("Average time per search query: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        BenchmarkUtils.writeResults(resPath, counts, latencies);
     }
 
     public void benchExtractLatency(String resPath, int extrLen) throws IOException {
@@ -97,203 +120,618 @@ public class SuccinctFileBufferBench {
 
         long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize() - extrLen);
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("extract");
+        long[] latencies = new long[randoms.length];
 
         long sum = 0, qCount = 0;
         for(long offset: randoms) {
-            sum += buffer.extract((int) offset, extrLen).length;
+            sum += buffer.extract(offset, extrLen).length;
             qCount++;
             if(qCount >= WARMUP_QUERIES) break;
         }
 
         System.out.println("Warmup complete: Checksum = " + sum);
 
+        int q = 0;
         for(long offset: randoms) {
             long start = System.nanoTime();
-            byte[] result = buffer.extract((int) offset, extrLen);
+            buffer.extract(offset, extrLen);
             long end = System.nanoTime();
-            //bufferedWriter.write(new String(result) + "\t" + (end - start) + "\n");
-            bufferedWriter.write((end - start) + "\n");
-            totalTime += (end - start);
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / randoms.length;
-        System.out.println("Average time per extract query: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        BenchmarkUtils.writeResults(resPath, null, latencies);
     }
 
-    public void benchSearchThroughput(String queryFile, int numThreads) throws IOException,
+    public ThroughputEngine.Result benchSearchThroughput(String queryFile, String resPath, int numThreads) throws IOException,
         InterruptedException, ExecutionException {
 
+        return benchSearchThroughput(BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES), resPath, numThreads);
+    }
+
+    private ThroughputEngine.Result benchSearchThroughput(final byte[][] queries, String resPath, int numThreads)
+        throws IOException, InterruptedException, ExecutionException {
+
         System.out.println("Benchmarking search throughput with " + numThreads + " threads...");
-        String[] queries = BenchmarkUtils.readQueryFile(queryFile, MAX_QUERIES);
-        int queriesExecuted = 0;
 
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-        List<Future<Integer>> resAccumulator = new ArrayList<>(numThreads);
-        Callable<Integer>[] benchTasks = new SearchBenchTask[numThreads];
+        BenchmarkOp op = new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.search(queries[i]).length;
+            }
+        };
+        ThroughputEngine.Result result = new ThroughputEngine(numThreads, WARMUP_TIME, MEASUREMENT_TIME, COOLDOWN_TIME)
+            .run("search", op, queries.length);
 
-        for (int i = 0; i < numThreads; i++) {
-            int offset = i/numThreads * queries.length;
-            int lim = (i+1)/numThreads * queries.length;
-            benchTasks[i] = new SearchBenchTask(queries, offset, lim);
-        }
+        System.out.println("Search queries executed per second: " + result.getQps());
+        result.writeTimeSeries(resPath);
+        return result;
+    }
 
-        for (int i = 0; i < numThreads; i++) {
-            resAccumulator.add(executor.submit(benchTasks[i]));
-        }
+    public ThroughputEngine.Result benchExtractThroughput(String resPath, final int extrLen, int numThreads) throws IOException,
+        InterruptedException, ExecutionException {
 
-        for (Future<Integer> result : resAccumulator) {
-            queriesExecuted += result.get();
-        }
+        return benchExtractThroughput(generateExtractQueries(extrLen), resPath, extrLen, numThreads);
+    }
 
-        System.out.println("Search queries executed per second: " + queriesExecuted/MEASUREMENT_TIME);
-        executor.shutdown();
+    private long[] generateExtractQueries(int extrLen) {
+        long[] randoms = BenchmarkUtils.generateRandoms(MAX_THR_EXT_QUERIES, buffer.getOriginalSize() - extrLen);
+        System.out.println("Generated " + MAX_THR_EXT_QUERIES + " extract queries.");
+        return randoms;
+    }
+
+    private ThroughputEngine.Result benchExtractThroughput(final long[] randoms, String resPath, final int extrLen,
+        int numThreads) throws IOException, InterruptedException, ExecutionException {
+
+        System.out.println("Benchmarking extract throughput with " + numThreads + " threads...");
+
+        BenchmarkOp op = new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.extract(randoms[i], extrLen).length;
+            }
+        };
+        ThroughputEngine.Result result = new ThroughputEngine(numThreads, WARMUP_TIME, MEASUREMENT_TIME, COOLDOWN_TIME)
+            .run("extract", op, randoms.length);
 
+        System.out.println("Extract queries executed per second: " + result.getQps());
+        result.writeTimeSeries(resPath);
+        return result;
     }
 
-    public void benchExtractThroughput(int extrLen, int numThreads) throws IOException,
+    public void benchSearchScalability(String queryFile, String resPath, int[] threadLevels) throws IOException,
         InterruptedException, ExecutionException {
 
-        System.out.println("Benchmarking extract throughput with " + numThreads + " threads...");
-        long[] randoms = BenchmarkUtils.generateRandoms(MAX_THR_EXT_QUERIES, buffer.getOriginalSize() - extrLen);
-        System.out.println("Generated " + MAX_THR_EXT_QUERIES + " extract queries. Starting benchmark...");
-        int queriesExecuted = 0;
+        // Every level runs the same queries, read once
+        byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        ScalabilityReport report = new ScalabilityReport("search");
+        for (int numThreads : threadLevels) {
+            report.add(benchSearchThroughput(queries, resPath + "_n" + numThreads, numThreads));
+        }
+        report.fit();
+        report.print();
+        report.writeCsv(resPath + "_scalability.csv");
+    }
 
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-        List<Future<Integer>> resAccumulator = new ArrayList<>(numThreads);
-        Callable<Integer>[] benchTasks = new ExtractBenchTask[numThreads];
+    public void benchExtractScalability(String resPath, int extrLen, int[] threadLevels) throws IOException,
+        InterruptedException, ExecutionException {
 
-        for (int i = 0; i < numThreads; i++) {
-            int offset = i/numThreads * randoms.length;
-            int lim = (i+1)/numThreads * randoms.length;
-            benchTasks[i] = new ExtractBenchTask(randoms, extrLen, offset, lim);
+        // Every level runs the same offsets, generated once
+        long[] randoms = generateExtractQueries(extrLen);
+        ScalabilityReport report = new ScalabilityReport("extract");
+        for (int numThreads : threadLevels) {
+            report.add(benchExtractThroughput(randoms, resPath + "_n" + numThreads, extrLen, numThreads));
         }
+        report.fit();
+        report.print();
+        report.writeCsv(resPath + "_scalability.csv");
+    }
 
-        for (int i = 0; i < numThreads; i++) {
-            resAccumulator.add(executor.submit(benchTasks[i]));
+    /**
+     * Runs an interleaved mix of count, search and extract operations on numThreads threads and
+     * reports latency percentiles per operation and aggregate throughput. Latencies are recorded
+     * during the measurement phase only.
+     * @param queryFile path to the query file, for count and search
+     * @param resPath prefix of the output paths
+     * @param extrLen length of extract queries
+     * @param numThreads number of threads
+     * @param mix the operation mix and per-operation distributions
+     */
+    public ThroughputEngine.Result benchMixed(String queryFile, String resPath, final int extrLen, int numThreads,
+        OperationMix mix) throws IOException, InterruptedException, ExecutionException {
+
+        System.out.println("Benchmarking mixed workload (" + mix + ") with " + numThreads + " threads...");
+        // The mix draws query indices itself, from the query workload unless the mix overrides it,
+        // so queries are read in file order rather than sampled
+        Workload queryWorkload = BenchmarkUtils.getQueryWorkload();
+        final byte[][] queries = BenchmarkUtils.readQueryCorpus(queryFile, MAX_QUERIES, null).toByteArrays();
+
+        // The sequence of operations and their arguments is drawn up front, so the measurement
+        // loop only executes it
+        Random rand = new Random();
+        final OperationMix.Operation[] ops = mix.generate(MAX_MIXED_QUERIES, rand);
+        final long[] args = new long[ops.length];
+        KeyGenerator[] generators = new KeyGenerator[OperationMix.Operation.values().length];
+        for (OperationMix.Operation op : OperationMix.Operation.values()) {
+            generators[op.ordinal()] = op == OperationMix.Operation.EXTRACT
+                ? mix.getDistribution(op, BenchmarkUtils.getOffsetWorkload())
+                    .newGenerator(buffer.getOriginalSize() - extrLen, rand)
+                : mix.getDistribution(op, queryWorkload != null ? queryWorkload : Workload.UNIFORM)
+                    .newGenerator(queries.length, rand);
+        }
+        for (int i = 0; i < ops.length; i++) {
+            args[i] = generators[ops[i].ordinal()].next();
         }
 
-        for (Future<Integer> result : resAccumulator) {
-            queriesExecuted += result.get();
+        final LatencyRecorder[] recorders = new LatencyRecorder[OperationMix.Operation.values().length];
+        for (OperationMix.Operation op : OperationMix.Operation.values()) {
+            recorders[op.ordinal()] = new LatencyRecorder("mixed " + op.name().toLowerCase());
         }
+        final ThroughputEngine engine = new ThroughputEngine(numThreads, WARMUP_TIME, MEASUREMENT_TIME, COOLDOWN_TIME);
+
+        BenchmarkOp op = new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                long start = System.nanoTime();
+                long result;
+                switch (ops[i]) {
+                    case COUNT:
+                        result = buffer.count(queries[(int) args[i]]);
+                        break;
+                    case SEARCH:
+                        result = buffer.search(queries[(int) args[i]]).length;
+                        break;
+                    default:
+                        result = buffer.extract(args[i], extrLen).length;
+                        break;
+                }
+                if (engine.isMeasuring()) {
+                    recorders[ops[i].ordinal()].record(System.nanoTime() - start);
+                }
+                return result;
+            }
+        };
+        ThroughputEngine.Result result = engine.run("mixed", op, ops.length);
+
+        double seconds = result.getMeasuredNanos() / 1e9;
+        System.out.println("Mixed operations executed per second: " + result.getQps());
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath + "_mixed.csv"));
+        bufferedWriter.write("operation,ops,ops_per_s,p50_ns,p90_ns,p99_ns,p999_ns\n");
+        for (OperationMix.Operation o : OperationMix.Operation.values()) {
+            LatencyRecorder recorder = recorders[o.ordinal()];
+            Histogram histogram = recorder.getHistogram();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            recorder.report(resPath + "_" + o.name().toLowerCase());
+            bufferedWriter.write(o.name().toLowerCase() + "," + histogram.getTotalCount() + ","
+                + histogram.getTotalCount() / seconds + "," + histogram.getValueAtPercentile(50) + ","
+                + histogram.getValueAtPercentile(90) + "," + histogram.getValueAtPercentile(99) + ","
+                + histogram.getValueAtPercentile(99.9) + "\n");
+        }
+        bufferedWriter.write("all," + result.getMeasuredOps() + "," + result.getQps() + ",,,,\n");
+        bufferedWriter.close();
+        result.writeTimeSeries(resPath);
+        return result;
+    }
 
-        System.out.println("Extract queries executed per second: " + queriesExecuted/MEASUREMENT_TIME);
-        executor.shutdown();
+    public void benchCountOpenLoop(String queryFile, String resPath, double qps,
+        OpenLoopDriver.ArrivalProcess arrivals, int numThreads) throws IOException, InterruptedException {
 
+        System.out.println("Benchmarking open-loop count latency...");
+        final byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        BenchmarkOp op = new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.count(queries[i]);
+            }
+        };
+        new OpenLoopDriver(numThreads, qps, arrivals).run("count", op, queries.length,
+            OPEN_LOOP_WARMUP_TIME, OPEN_LOOP_MEASUREMENT_TIME, resPath);
     }
 
-    public void benchAll(String queryFile, String resPath, int threads, int extrLength)
-        throws IOException, ExecutionException, InterruptedException {
-        benchAllLatency(queryFile, resPath, extrLength);
-        benchAllThroughput(queryFile, extrLength, threads);
+    public void benchSearchOpenLoop(String queryFile, String resPath, double qps,
+        OpenLoopDriver.ArrivalProcess arrivals, int numThreads) throws IOException, InterruptedException {
+
+        System.out.println("Benchmarking open-loop search latency...");
+        final byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        BenchmarkOp op = new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.search(queries[i]).length;
+            }
+        };
+        new OpenLoopDriver(numThreads, qps, arrivals).run("search", op, queries.length,
+            OPEN_LOOP_WARMUP_TIME, OPEN_LOOP_MEASUREMENT_TIME, resPath);
     }
 
-    public void benchAllLatency(String queryFile, String resPath, int extrLength) throws IOException {
-        benchCountLatency(queryFile, resPath + "_count_lat");
-        benchSearchLatency(queryFile, resPath + "_search_lat");
-        benchExtractLatency(resPath + "_extract_lat", extrLength);
+    public void benchExtractOpenLoop(String resPath, final int extrLen, double qps,
+        OpenLoopDriver.ArrivalProcess arrivals, int numThreads) throws IOException, InterruptedException {
+
+        System.out.println("Benchmarking open-loop extract latency...");
+        final long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize() - extrLen);
+        BenchmarkOp op = new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.extract(randoms[i], extrLen).length;
+            }
+        };
+        new OpenLoopDriver(numThreads, qps, arrivals).run("extract", op, randoms.length,
+            OPEN_LOOP_WARMUP_TIME, OPEN_LOOP_MEASUREMENT_TIME, resPath);
     }
 
-    public void benchAllThroughput(String queryFile, int extrLength, int threads)
-        throws IOException, ExecutionException, InterruptedException {
-        benchSearchThroughput(queryFile, threads);
-        benchExtractThroughput(extrLength, threads);
+    public void benchCountConcurrent(String queryFile, String resPath, ConcurrencyDriver.ExecutionMode mode,
+        int concurrency, int poolThreads) throws IOException, InterruptedException {
+
+        System.out.println("Benchmarking count with " + concurrency + " concurrent requests...");
+        final byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        BenchmarkOp op = new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.count(queries[i]);
+            }
+        };
+        new ConcurrencyDriver(mode, concurrency, poolThreads).run("count", op, queries.length,
+            OPEN_LOOP_WARMUP_TIME, OPEN_LOOP_MEASUREMENT_TIME, resPath);
     }
 
-    private class SearchBenchTask implements Callable<Integer> {
+    public void benchSearchConcurrent(String queryFile, String resPath, ConcurrencyDriver.ExecutionMode mode,
+        int concurrency, int poolThreads) throws IOException, InterruptedException {
 
-        private int queriesExecuted;
-        private String[] queries;
-        private int startOffset;
-        private int endLimit;
+        System.out.println("Benchmarking search with " + concurrency + " concurrent requests...");
+        final byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        BenchmarkOp op = new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.search(queries[i]).length;
+            }
+        };
+        new ConcurrencyDriver(mode, concurrency, poolThreads).run("search", op, queries.length,
+            OPEN_LOOP_WARMUP_TIME, OPEN_LOOP_MEASUREMENT_TIME, resPath);
+    }
 
-        public SearchBenchTask(String[] queries, int offset, int lim) {
-            queriesExecuted = 0;
-            this.queries = queries;
-            startOffset = offset;
-            endLimit = lim;
-        }
+    public void benchExtractConcurrent(String resPath, final int extrLen, ConcurrencyDriver.ExecutionMode mode,
+        int concurrency, int poolThreads) throws IOException, InterruptedException {
 
-        @Override
-        public Integer call() {
+        System.out.println("Benchmarking extract with " + concurrency + " concurrent requests...");
+        final long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize() - extrLen);
+        BenchmarkOp op = new BenchmarkOp() {
+            @Override
+            public long execute(int i) {
+                return buffer.extract(randoms[i], extrLen).length;
+            }
+        };
+        new ConcurrencyDriver(mode, concurrency, poolThreads).run("extract", op, randoms.length,
+            OPEN_LOOP_WARMUP_TIME, OPEN_LOOP_MEASUREMENT_TIME, resPath);
+    }
 
-            long until = System.currentTimeMillis() + WARMUP_TIME*1000L;
-            int i = startOffset;
+    public void benchCountBatch(String queryFile, String resPath, int batchSize) throws IOException {
+        System.out.println("Benchmarking batched count with batch size " + batchSize + "...");
 
-            while(System.currentTimeMillis() < until) {
-                buffer.search(queries[i++].getBytes());
-                if (i == endLimit) {
-                    i = startOffset;
-                }
+        byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        byte[][][] batches = BenchmarkUtils.splitBatches(queries, batchSize);
+        BatchSearcher searcher = new BatchSearcher(buffer);
+
+        LatencyRecorder batchRecorder = new LatencyRecorder("batched count (per pattern)");
+        LatencyRecorder loopRecorder = new LatencyRecorder("one-at-a-time count (per pattern)");
+        long[] batchLatencies = new long[batches.length];
+        long[] loopLatencies = new long[batches.length];
+
+        long sum = 0, qCount = 0;
+        for (byte[][] batch : batches) {
+            for (long count : searcher.countAll(batch)) {
+                sum += count;
+            }
+            for (byte[] query : batch) {
+                sum += buffer.count(query);
             }
+            qCount += batch.length;
+            if (qCount >= WARMUP_QUERIES) break;
+        }
+
+        System.out.println("Warmup complete: Checksum = " + sum);
 
-            until = System.currentTimeMillis() + MEASUREMENT_TIME*1000L;
-            while(System.currentTimeMillis() < until) {
-                buffer.search(queries[i++].getBytes());
-                queriesExecuted++;
-                if (i == endLimit) {
-                    i = startOffset;
+        long mismatches = 0, batchTotal = 0, loopTotal = 0;
+        long[] loopCounts = new long[batchSize];
+        for (int b = 0; b < batches.length; b++) {
+            byte[][] batch = batches[b];
+
+            // Alternate which runs first, so neither is always timed on data the other just touched
+            long[] batchCounts;
+            long batchNanos, loopNanos;
+            if (b % 2 == 0) {
+                long start = System.nanoTime();
+                batchCounts = searcher.countAll(batch);
+                long mid = System.nanoTime();
+                for (int i = 0; i < batch.length; i++) {
+                    loopCounts[i] = buffer.count(batch[i]);
                 }
+                long end = System.nanoTime();
+                batchNanos = mid - start;
+                loopNanos = end - mid;
+            } else {
+                long start = System.nanoTime();
+                for (int i = 0; i < batch.length; i++) {
+                    loopCounts[i] = buffer.count(batch[i]);
+                }
+                long mid = System.nanoTime();
+                batchCounts = searcher.countAll(batch);
+                long end = System.nanoTime();
+                loopNanos = mid - start;
+                batchNanos = end - mid;
             }
 
-            until = System.currentTimeMillis() + COOLDOWN_TIME*1000L;
-            while(System.currentTimeMillis() < until) {
-                buffer.search(queries[i++].getBytes());
-                if (i == endLimit) {
-                    i = startOffset;
-                }
+            for (int i = 0; i < batch.length; i++) {
+                if (batchCounts[i] != loopCounts[i]) mismatches++;
             }
+            batchLatencies[b] = batchNanos;
+            loopLatencies[b] = loopNanos;
+            batchTotal += batchNanos;
+            loopTotal += loopNanos;
+            batchRecorder.record(batchNanos / batch.length);
+            loopRecorder.record(loopNanos / batch.length);
+        }
 
-            return queriesExecuted;
+        if (mismatches > 0) {
+            System.out.println("[WARNING] " + mismatches + " batched counts differ from SuccinctFileBuffer.count");
         }
+        System.out.println("Average time per pattern: batched = " + (batchTotal / (double) queries.length)
+            + ", one-at-a-time = " + (loopTotal / (double) queries.length) + " (speedup "
+            + (loopTotal / (double) batchTotal) + "x)");
+        batchRecorder.report(resPath + "_batch");
+        loopRecorder.report(resPath + "_loop");
+        BenchmarkUtils.writeResults(resPath, batchLatencies, loopLatencies);
     }
 
-    private class ExtractBenchTask implements Callable<Integer> {
+    public void benchSearchBatch(String queryFile, String resPath, int batchSize) throws IOException {
+        System.out.println("Benchmarking batched search with batch size " + batchSize + "...");
 
-        private int queriesExecuted, startOffset, endLimit, extrLen;
-        private long[] randoms;
+        byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        byte[][][] batches = BenchmarkUtils.splitBatches(queries, batchSize);
+        BatchSearcher searcher = new BatchSearcher(buffer);
 
-        public ExtractBenchTask(long[] randoms, int extrLen, int offset, int lim) {
-            queriesExecuted = 0;
-            this.randoms = randoms;
-            this.extrLen = extrLen;
-            startOffset = offset;
-            endLimit = lim;
-        }
+        LatencyRecorder batchRecorder = new LatencyRecorder("batched search (per pattern)");
+        LatencyRecorder loopRecorder = new LatencyRecorder("one-at-a-time search (per pattern)");
+        long[] batchLatencies = new long[batches.length];
+        long[] loopLatencies = new long[batches.length];
 
-        @Override
-        public Integer call() {
+        long sum = 0, qCount = 0;
+        for (byte[][] batch : batches) {
+            for (long[] results : searcher.searchAll(batch)) {
+                sum += results.length;
+            }
+            for (byte[] query : batch) {
+                sum += buffer.search(query).length;
+            }
+            qCount += batch.length;
+            if (qCount >= WARMUP_QUERIES) break;
+        }
 
-            long until = System.currentTimeMillis() + WARMUP_TIME*1000L;
-            int i = startOffset;
+        System.out.println("Warmup complete: Checksum = " + sum);
 
-            while(System.currentTimeMillis() < until) {
-                buffer.extract(randoms[i++], extrLen);
-                if (i == endLimit) {
-                    i = startOffset;
+        long mismatches = 0, batchTotal = 0, loopTotal = 0;
+        long[] loopCounts = new long[batchSize];
+        for (int b = 0; b < batches.length; b++) {
+            byte[][] batch = batches[b];
+
+            // Alternate which runs first, so neither is always timed on data the other just touched
+            long[][] batchResults;
+            long batchNanos, loopNanos;
+            if (b % 2 == 0) {
+                long start = System.nanoTime();
+                batchResults = searcher.searchAll(batch);
+                long mid = System.nanoTime();
+                for (int i = 0; i < batch.length; i++) {
+                    loopCounts[i] = buffer.search(batch[i]).length;
                 }
+                long end = System.nanoTime();
+                batchNanos = mid - start;
+                loopNanos = end - mid;
+            } else {
+                long start = System.nanoTime();
+                for (int i = 0; i < batch.length; i++) {
+                    loopCounts[i] = buffer.search(batch[i]).length;
+                }
+                long mid = System.nanoTime();
+                batchResults = searcher.searchAll(batch);
+                long end = System.nanoTime();
+                loopNanos = mid - start;
+                batchNanos = end - mid;
             }
 
-            until = System.currentTimeMillis() + MEASUREMENT_TIME*1000L;
-            while(System.currentTimeMillis() < until) {
-                buffer.extract(randoms[i++], extrLen);
-                queriesExecuted++;
-                if (i == endLimit) {
-                    i = startOffset;
-                }
+            for (int i = 0; i < batch.length; i++) {
+                if (batchResults[i].length != loopCounts[i]) mismatches++;
+            }
+            batchLatencies[b] = batchNanos;
+            loopLatencies[b] = loopNanos;
+            batchTotal += batchNanos;
+            loopTotal += loopNanos;
+            batchRecorder.record(batchNanos / batch.length);
+            loopRecorder.record(loopNanos / batch.length);
+        }
+
+        if (mismatches > 0) {
+            System.out.println("[WARNING] " + mismatches + " batched searches differ from SuccinctFileBuffer.search");
+        }
+        System.out.println("Average time per pattern: batched = " + (batchTotal / (double) queries.length)
+            + ", one-at-a-time = " + (loopTotal / (double) queries.length) + " (speedup "
+            + (loopTotal / (double) batchTotal) + "x)");
+        batchRecorder.report(resPath + "_batch");
+        loopRecorder.report(resPath + "_loop");
+        BenchmarkUtils.writeResults(resPath, batchLatencies, loopLatencies);
+    }
+
+    public void benchCachedSearch(String queryFile, String resPath, long[] cacheSizes) throws IOException {
+        byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+
+        for (long cacheSize : cacheSizes) {
+            System.out.println("Benchmarking cached search with a " + cacheSize + " byte cache...");
+
+            LatencyRecorder recorder = new LatencyRecorder("cached search (" + cacheSize + " bytes)");
+            long[] counts = new long[queries.length];
+            long[] latencies = new long[queries.length];
+
+            // Warm up the JIT on a throwaway cache, so the measured cache starts empty and the
+            // hit ratio is not inflated by the warmup queries
+            CachedSuccinctFileBuffer warmup = new CachedSuccinctFileBuffer(buffer, cacheSize);
+            long sum = 0, qCount = 0;
+            for (byte[] query : queries) {
+                sum += warmup.search(query).length;
+                qCount++;
+                if (qCount >= WARMUP_QUERIES) break;
             }
 
-            until = System.currentTimeMillis() + COOLDOWN_TIME*1000L;
-            while(System.currentTimeMillis() < until) {
-                buffer.extract(randoms[i++], extrLen);
-                if (i == endLimit) {
-                    i = startOffset;
+            System.out.println("Warmup complete: Checksum = " + sum);
+            CachedSuccinctFileBuffer cached = new CachedSuccinctFileBuffer(buffer, cacheSize);
+
+            int q = 0;
+            for (byte[] query : queries) {
+                long start = System.nanoTime();
+                long[] results = cached.search(query);
+                long end = System.nanoTime();
+                counts[q] = results.length;
+                latencies[q++] = end - start;
+                recorder.record(end - start);
+            }
+
+            CacheStats stats = cached.stats();
+            System.out.println("Cache size " + cacheSize + ": hit ratio = " + stats.hitRate() + ", hits = "
+                + stats.hitCount() + ", misses = " + stats.missCount() + ", evictions = " + stats.evictionCount()
+                + ", cached bytes = " + cached.cachedBytes());
+            String sizeResPath = resPath + "_" + cacheSize;
+            recorder.report(sizeResPath);
+            BenchmarkUtils.writeResults(sizeResPath, counts, latencies);
+        }
+    }
+
+    /**
+     * Compares SuccinctFileBuffer.search, which returns a boxed Long[], with PrimitiveSearcher
+     * filling a reused long[] and a reused off-heap LongBuffer. For each, reports latency, bytes
+     * allocated per query and the garbage collections during the measurement, and writes them to
+     * resPath_search_alloc.csv. Per-query results list the bytes allocated before the latency.
+     */
+    public void benchSearchAllocation(String queryFile, String resPath) throws IOException {
+        System.out.println("Benchmarking boxed vs. primitive search allocation...");
+
+        final byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
+        final PrimitiveSearcher searcher = new PrimitiveSearcher(buffer);
+        final PrimitiveSearcher.Cursor cursor = new PrimitiveSearcher.Cursor();
+        final long[] offsets = new long[PRIMITIVE_SEARCH_CAPACITY];
+        final LongBuffer offHeap = ByteBuffer.allocateDirect(PRIMITIVE_SEARCH_CAPACITY * 8).asLongBuffer();
+
+        long mismatches = 0;
+        for (int i = 0; i < Math.min(queries.length, WARMUP_QUERIES); i++) {
+            if (buffer.search(queries[i]).length != searcher.search(queries[i], cursor).size()) mismatches++;
+        }
+        if (mismatches > 0) {
+            System.out.println("[WARNING] " + mismatches + " primitive searches differ from SuccinctFileBuffer.search");
+        }
+
+        String[] modes = {"boxed", "primitive", "primitive_offheap"};
+        BenchmarkOp[] ops = {
+            new BenchmarkOp() {
+                @Override
+                public long execute(int i) {
+                    Long[] results = buffer.search(queries[i]);
+                    return results.length == 0 ? 0 : results.length + results[results.length - 1];
+                }
+            },
+            new BenchmarkOp() {
+                @Override
+                public long execute(int i) {
+                    searcher.search(queries[i], cursor);
+                    long sum = 0;
+                    while (cursor.hasRemaining()) {
+                        int n = cursor.fill(offsets);
+                        sum += n + offsets[n - 1];
+                    }
+                    return sum;
                 }
+            },
+            new BenchmarkOp() {
+                @Override
+                public long execute(int i) {
+                    searcher.search(queries[i], cursor);
+                    long sum = 0;
+                    while (cursor.hasRemaining()) {
+                        offHeap.clear();
+                        int n = cursor.fill(offHeap);
+                        sum += n + offHeap.get(n - 1);
+                    }
+                    return sum;
+                }
+            }
+        };
+
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath + "_search_alloc.csv"));
+        bufferedWriter.write("mode,p50_ns,p99_ns,p999_ns,mean_ns,allocated_bytes_per_query,gc_count,gc_ms\n");
+        for (int m = 0; m < modes.length; m++) {
+            BenchmarkOp op = ops[m];
+            LatencyRecorder recorder = new LatencyRecorder(modes[m] + " search");
+            long[] allocated = new long[queries.length];
+            long[] latencies = new long[queries.length];
+
+            long sum = 0;
+            for (int i = 0; i < Math.min(queries.length, WARMUP_QUERIES); i++) {
+                sum += op.execute(i);
             }
 
-            return queriesExecuted;
+            System.out.println("Warmup complete: Checksum = " + sum);
+
+            long gcCountBefore = ProcessStats.gcCount();
+            long gcTimeBefore = ProcessStats.gcTimeMillis();
+            long totalAllocated = 0;
+            for (int i = 0; i < queries.length; i++) {
+                long allocatedBefore = ProcessStats.threadAllocatedBytes();
+                long start = System.nanoTime();
+                op.execute(i);
+                long end = System.nanoTime();
+                allocated[i] = ProcessStats.threadAllocatedBytes() - allocatedBefore;
+                totalAllocated += allocated[i];
+                latencies[i] = end - start;
+                recorder.record(end - start);
+            }
+            long gcCount = ProcessStats.gcCount() - gcCountBefore;
+            long gcMillis = ProcessStats.gcTimeMillis() - gcTimeBefore;
+            double allocatedPerQuery = ProcessStats.threadAllocatedBytes() < 0 ? -1
+                : (double) totalAllocated / queries.length;
+
+            System.out.println(modes[m] + " search: " + String.format("%.1f", allocatedPerQuery)
+                + " bytes allocated per query; " + gcCount + " collections taking " + gcMillis + " ms");
+            String modePath = resPath + "_" + modes[m];
+            recorder.report(modePath);
+            BenchmarkUtils.writeResults(modePath, allocated, latencies);
+
+            Histogram histogram = recorder.getHistogram();
+            bufferedWriter.write(modes[m] + "," + histogram.getValueAtPercentile(50) + ","
+                + histogram.getValueAtPercentile(99) + "," + histogram.getValueAtPercentile(99.9) + ","
+                + histogram.getMean() + "," + allocatedPerQuery + "," + gcCount + "," + gcMillis + "\n");
+        }
+        bufferedWriter.close();
+    }
+
+    public void benchAll(String queryFile, String resPath, int[] threads, int extrLength)
+        throws IOException, ExecutionException, InterruptedException {
+        benchAllLatency(queryFile, resPath, extrLength);
+        benchAllThroughput(queryFile, resPath, extrLength, threads);
+    }
+
+    public void benchAllLatency(String queryFile, String resPath, int extrLength) throws IOException {
+        benchCountLatency(queryFile, resPath + "_count_lat");
+        benchSearchLatency(queryFile, resPath + "_search_lat");
+        benchExtractLatency(resPath + "_extract_lat", extrLength);
+    }
+
+    public void benchAllThroughput(String queryFile, String resPath, int extrLength, int[] threads)
+        throws IOException, ExecutionException, InterruptedException {
+        if (threads.length == 1) {
+            benchSearchThroughput(queryFile, resPath + "_search_thr", threads[0]);
+            benchExtractThroughput(resPath + "_extract_thr", extrLength, threads[0]);
+        } else {
+            benchSearchScalability(queryFile, resPath + "_search_thr", threads);
+            benchExtractScalability(resPath + "_extract_thr", extrLength, threads);
         }
     }
 
@@ -0,0 +1,117 @@
+package edu.berkeley.cs.succinct.perf.buffers;
+
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+
+import java.util.Arrays;
+
+/**
+ * A key-value store over a SuccinctFileBuffer of delimited records. The key of a record is
+ * its index in the input; a sorted array of record start offsets maps keys to byte ranges, and
+ * search results back to the records that contain them.
+ */
+public class SuccinctIndexedBuffer {
+
+    private final SuccinctFileBuffer buffer;
+    // Start offset of each record, followed by where a record after the last would start
+    private final long[] recordOffsets;
+    private final int numRecords;
+
+    /**
+     * @param buffer buffer over the delimited records
+     * @param recordOffsets start offset of each record, ascending, followed by the offset just
+     *                      past the last record's delimiter (as from recordOffsets())
+     */
+    public SuccinctIndexedBuffer(SuccinctFileBuffer buffer, long[] recordOffsets) {
+        this.buffer = buffer;
+        this.recordOffsets = recordOffsets;
+        this.numRecords = recordOffsets.length - 1;
+    }
+
+    /**
+     * Builds the store over delimited records. A delimiter terminates each record; the last
+     * record need not be terminated.
+     * @param data the records
+     * @param delimiter record delimiter
+     * @return the store
+     */
+    public static SuccinctIndexedBuffer build(byte[] data, byte delimiter) {
+        return new SuccinctIndexedBuffer(new SuccinctFileBuffer(data), recordOffsets(data, delimiter));
+    }
+
+    /**
+     * @return start offset of every record in data, followed by the offset just past the last
+     * record's delimiter; if the last record is not terminated, as if it were
+     */
+    public static long[] recordOffsets(byte[] data, byte delimiter) {
+        int numRecords = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == delimiter || i == data.length - 1) {
+                numRecords++;
+            }
+        }
+        long[] offsets = new long[numRecords + 1];
+        int r = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == delimiter || i == data.length - 1) {
+                offsets[++r] = i + 1;
+            }
+        }
+        if (data.length > 0 && data[data.length - 1] != delimiter) {
+            offsets[numRecords] = data.length + 1;
+        }
+        return offsets;
+    }
+
+    public int getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * @param key index of a record
+     * @return the record, without its delimiter
+     */
+    public byte[] get(int key) {
+        if (key < 0 || key >= numRecords) {
+            throw new IndexOutOfBoundsException("No record " + key + "; there are " + numRecords);
+        }
+        long start = recordOffsets[key];
+        return buffer.extract(start, (int) (recordOffsets[key + 1] - start - 1));
+    }
+
+    /**
+     * @param keys indices of records
+     * @return the records, in the order of keys
+     */
+    public byte[][] multiGet(int[] keys) {
+        byte[][] records = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            records[i] = get(keys[i]);
+        }
+        return records;
+    }
+
+    /**
+     * @param query a pattern that does not contain the delimiter
+     * @return keys of the records that contain query, ascending and without duplicates
+     */
+    public int[] search(byte[] query) {
+        Long[] offsets = buffer.search(query);
+        int[] keys = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            keys[i] = keyOf(offsets[i]);
+        }
+        Arrays.sort(keys);
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (n == 0 || keys[i] != keys[n - 1]) {
+                keys[n++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, n);
+    }
+
+    private int keyOf(long offset) {
+        int i = Arrays.binarySearch(recordOffsets, 0, numRecords, offset);
+        return i >= 0 ? i : -i - 2;
+    }
+}
@@ -0,0 +1,136 @@
+package edu.berkeley.cs.succinct.perf.build;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes a raw input that was split into partitions and built into one serialized Succinct
+ * file per partition. The manifest is a tab-separated text file: a header line with the input
+ * path and size, then one line per partition with its index, offset and length in the input
+ * and the name of its serialized file, relative to the manifest.
+ */
+public class PartitionManifest {
+
+    private static final String HEADER = "# succinct partitions";
+
+    /**
+     * A contiguous range of the input and the serialized file built from it.
+     */
+    public static class Partition {
+        private final int index;
+        private final long offset;
+        private final long length;
+        private final String path;
+
+        public Partition(int index, long offset, long length, String path) {
+            this.index = index;
+            this.offset = offset;
+            this.length = length;
+            this.path = path;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return offset of the partition's first byte in the input
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * @return path of the serialized file
+         */
+        public String getPath() {
+            return path;
+        }
+    }
+
+    private final String inputPath;
+    private final long inputSize;
+    private final List<Partition> partitions;
+
+    public PartitionManifest(String inputPath, long inputSize, List<Partition> partitions) {
+        this.inputPath = inputPath;
+        this.inputSize = inputSize;
+        this.partitions = Collections.unmodifiableList(new ArrayList<Partition>(partitions));
+    }
+
+    public String getInputPath() {
+        return inputPath;
+    }
+
+    public long getInputSize() {
+        return inputSize;
+    }
+
+    public List<Partition> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Writes the manifest. Partition paths are written relative to the manifest's directory.
+     * @param manifestPath output path
+     * @throws IOException
+     */
+    public void write(String manifestPath) throws IOException {
+        File dir = new File(manifestPath).getAbsoluteFile().getParentFile();
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(manifestPath));
+        bufferedWriter.write(HEADER + "\t" + inputPath + "\t" + inputSize + "\n");
+        for (Partition partition : partitions) {
+            String name = dir.toPath().relativize(new File(partition.path).getAbsoluteFile().toPath()).toString();
+            bufferedWriter.write(partition.index + "\t" + partition.offset + "\t" + partition.length + "\t" + name + "\n");
+        }
+        bufferedWriter.close();
+    }
+
+    /**
+     * Reads a manifest. Partition paths are resolved against the manifest's directory.
+     * @param manifestPath path of the manifest
+     * @return the manifest
+     * @throws IOException if the file cannot be read or is not a partition manifest
+     */
+    public static PartitionManifest read(String manifestPath) throws IOException {
+        File dir = new File(manifestPath).getAbsoluteFile().getParentFile();
+        try (BufferedReader reader = new BufferedReader(new FileReader(manifestPath))) {
+            String[] header = splitLine(reader.readLine(), 3, manifestPath);
+            if (!header[0].equals(HEADER)) {
+                throw new IOException(manifestPath + " is not a partition manifest");
+            }
+            List<Partition> partitions = new ArrayList<Partition>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = splitLine(line, 4, manifestPath);
+                partitions.add(new Partition(Integer.parseInt(fields[0]), Long.parseLong(fields[1]),
+                    Long.parseLong(fields[2]), new File(dir, fields[3]).getPath()));
+            }
+            return new PartitionManifest(header[1], Long.parseLong(header[2]), partitions);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed partition manifest " + manifestPath, e);
+        }
+    }
+
+    private static String[] splitLine(String line, int numFields, String manifestPath) throws IOException {
+        String[] fields = line == null ? new String[0] : line.split("\t");
+        if (fields.length != numFields) {
+            throw new IOException("Malformed partition manifest " + manifestPath + ": " + line);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,170 @@
+package edu.berkeley.cs.succinct.perf.build;
+
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+import edu.berkeley.cs.succinct.perf.ProcessStats;
+import edu.berkeley.cs.succinct.perf.SegmentedBuffer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds Succinct data structures for a raw input in parallel. The input is split into
+ * partitions, a SuccinctFileBuffer is built for each partition on a fork-join pool, and each
+ * is written to its own file, along with a PartitionManifest describing the split.
+ *
+ * Partitions end after a newline where one is found near the cut, so that records are not
+ * split across partitions; otherwise they are cut at the exact offset.
+ */
+public class PartitionedBuilder {
+
+    // A partition is built from a single byte[], and construction needs several times its size
+    // in memory
+    private static final long MAX_PARTITION_SIZE = 1L << 30;
+    // How far past a cut to look for a newline
+    private static final int MAX_RECORD_SEEK = 1 << 20;
+
+    private final String inputPath;
+    private final String outputPrefix;
+    private final int numPartitions;
+    private final int numThreads;
+
+    /**
+     * @param inputPath path of the raw input
+     * @param outputPrefix prefix of the output files: partitions are written to
+     *                     outputPrefix.part-N.succinct and the manifest to outputPrefix.manifest
+     * @param numPartitions number of partitions; raised if partitions would exceed 1 GB
+     * @param numThreads number of partitions built at once
+     */
+    public PartitionedBuilder(String inputPath, String outputPrefix, int numPartitions, int numThreads) {
+        this.inputPath = inputPath;
+        this.outputPrefix = outputPrefix;
+        this.numPartitions = numPartitions;
+        this.numThreads = numThreads;
+    }
+
+    public static String manifestPath(String outputPrefix) {
+        return outputPrefix + ".manifest";
+    }
+
+    /**
+     * Builds and writes all partitions and the manifest, prints the build throughput, peak
+     * memory and compression ratio, and writes them to resPath as CSV.
+     * @param resPath output path of the CSV summary
+     * @return the manifest
+     * @throws IOException
+     */
+    public PartitionManifest build(String resPath) throws IOException {
+        SegmentedBuffer input = SegmentedBuffer.map(inputPath);
+        List<PartitionManifest.Partition> partitions = partition(input);
+        System.out.println("Building " + partitions.size() + " partitions of " + inputPath + " ("
+            + input.size() + " bytes) on " + numThreads + " threads...");
+
+        ProcessStats.resetPeakHeap();
+        boolean peakRssReset = ProcessStats.resetPeakRss();
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            pool.invoke(new BuildTask(input, partitions, 0, partitions.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        PartitionManifest manifest = new PartitionManifest(inputPath, input.size(), partitions);
+        manifest.write(manifestPath(outputPrefix));
+
+        long outputSize = 0;
+        for (PartitionManifest.Partition partition : partitions) {
+            outputSize += new File(partition.getPath()).length();
+        }
+        double seconds = elapsedNanos / 1e9;
+        double mbPerSec = input.size() / (1024.0 * 1024.0) / seconds;
+        double ratio = (double) outputSize / input.size();
+        long peakHeap = ProcessStats.peakHeapBytes();
+        long peakRss = ProcessStats.peakRssBytes();
+
+        System.out.println("Built " + input.size() + " bytes in " + String.format("%.1f", seconds) + " s ("
+            + String.format("%.2f", mbPerSec) + " MB/s)");
+        System.out.println("Output = " + outputSize + " bytes, " + String.format("%.3f", ratio)
+            + "x the input; peak heap = " + ProcessStats.formatMB(peakHeap) + ", peak RSS"
+            + (peakRssReset ? " during build" : "") + " = " + ProcessStats.formatMB(peakRss));
+        System.out.println("Manifest written to " + manifestPath(outputPrefix));
+
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        bufferedWriter.write("input_bytes,output_bytes,partitions,threads,seconds,mb_per_s,compression_ratio,"
+            + "peak_heap_bytes,peak_rss_bytes\n");
+        bufferedWriter.write(input.size() + "," + outputSize + "," + partitions.size() + "," + numThreads + ","
+            + seconds + "," + mbPerSec + "," + ratio + "," + peakHeap + "," + peakRss + "\n");
+        bufferedWriter.close();
+        return manifest;
+    }
+
+    private List<PartitionManifest.Partition> partition(SegmentedBuffer input) {
+        long size = input.size();
+        int n = (int) Math.max(numPartitions, (size + MAX_PARTITION_SIZE - 1) / MAX_PARTITION_SIZE);
+        n = (int) Math.max(1, Math.min(n, size));
+
+        List<PartitionManifest.Partition> partitions = new ArrayList<PartitionManifest.Partition>();
+        long offset = 0;
+        for (int i = 0; i < n && offset < size; i++) {
+            long end = (i == n - 1) ? size : recordBoundary(input, Math.max(offset + 1, size * (i + 1) / n));
+            partitions.add(new PartitionManifest.Partition(partitions.size(), offset, end - offset,
+                outputPrefix + ".part-" + partitions.size() + ".succinct"));
+            offset = end;
+        }
+        return partitions;
+    }
+
+    private static long recordBoundary(SegmentedBuffer input, long cut) {
+        long limit = Math.min(input.size(), cut + MAX_RECORD_SEEK);
+        for (long pos = cut - 1; pos < limit - 1; pos++) {
+            if (input.get(pos) == '\n') {
+                return pos + 1;
+            }
+        }
+        return cut;
+    }
+
+    private static class BuildTask extends RecursiveAction {
+        private final SegmentedBuffer input;
+        private final List<PartitionManifest.Partition> partitions;
+        private final int from;
+        private final int to;
+
+        BuildTask(SegmentedBuffer input, List<PartitionManifest.Partition> partitions, int from, int to) {
+            this.input = input;
+            this.partitions = partitions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BuildTask(input, partitions, from, mid), new BuildTask(input, partitions, mid, to));
+                return;
+            }
+            PartitionManifest.Partition partition = partitions.get(from);
+            byte[] data = new byte[(int) partition.getLength()];
+            input.get(partition.getOffset(), data, 0, data.length);
+            long start = System.nanoTime();
+            try {
+                new SuccinctFileBuffer(data).writeToFile(partition.getPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            System.out.println("Built partition " + partition.getIndex() + " (" + data.length + " bytes) in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Reads the data of another backend through a CachingFileSystem, i.e. through the off-heap
+ * page cache.
+ */
+public class CachedBackend extends WrappedBackend {
+
+    private final long budget;
+    private final int pageSize;
+
+    /**
+     * @param backend backend whose data is read
+     * @param budget memory budget of the page cache in bytes
+     * @param pageSize page size in bytes
+     */
+    public CachedBackend(HadoopStorageBackend backend, long budget, int pageSize) {
+        super(backend);
+        this.budget = budget;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public String getName() {
+        return "cached(" + backend.getName() + ", " + budget + " bytes, " + pageSize + " byte pages)";
+    }
+
+    @Override
+    protected String getScheme() {
+        return CachingFileSystem.SCHEME;
+    }
+
+    @Override
+    protected Configuration register(Configuration conf, String targetScheme) {
+        return CachingFileSystem.register(conf, targetScheme, budget, pageSize);
+    }
+}
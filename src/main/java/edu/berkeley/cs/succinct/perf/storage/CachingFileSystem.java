@@ -0,0 +1,339 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.Path;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A read-only Hadoop FileSystem that serves the files of another one through the process-wide
+ * off-heap PageCache, under the cached:// scheme. Every read is split into page reads; only
+ * pages that are not cached are fetched, as whole pages, from the wrapped file system.
+ *
+ * With readahead enabled, each stream detects sequential access: once a run of reads has
+ * covered SEQUENTIAL_TRIGGER consecutive pages, the following pages are prefetched into the
+ * cache asynchronously on a background pool. The readahead window starts at INITIAL_WINDOW pages
+ * and doubles each time the reader gets within half a window of its end, up to the configured
+ * maximum. A stream is shared by every reader of a Succinct structure, so it tracks up to
+ * TRACKED_RUNS runs at once: interleaved readers (different parts of the structure, or
+ * concurrent threads) each continue their own run, and a read that continues none of them
+ * replaces the least recently used one.
+ */
+public class CachingFileSystem extends WrappingFileSystem {
+
+    public static final String SCHEME = "cached";
+
+    public static final String BUDGET_KEY = "succinct.perf.cached.budget";
+    public static final String PAGE_SIZE_KEY = "succinct.perf.cached.page.size";
+
+    private static final int SEQUENTIAL_TRIGGER = 2;
+    private static final int INITIAL_WINDOW = 4;
+    private static final int TRACKED_RUNS = 8;
+    private static final int PREFETCH_THREADS = 4;
+
+    private static volatile int maxReadahead = 0;
+    private static ExecutorService prefetcher;
+    // Prefetch tasks submitted but not yet finished; guarded by PREFETCH_LOCK
+    private static final Object PREFETCH_LOCK = new Object();
+    private static int pendingPrefetches = 0;
+    private static final AtomicLong prefetchesIssued = new AtomicLong();
+
+    private PageCache cache;
+
+    /**
+     * Registers the file system in a configuration, so that cached:// paths resolve to it.
+     * @param conf the configuration
+     * @param targetScheme scheme of the wrapped file system, e.g. hdfs or file
+     * @param budget memory budget of the page cache in bytes
+     * @param pageSize page size in bytes
+     * @return the configuration
+     */
+    public static Configuration register(Configuration conf, String targetScheme, long budget, int pageSize) {
+        register(conf, SCHEME, CachingFileSystem.class, targetScheme);
+        conf.setLong(BUDGET_KEY, budget);
+        conf.setInt(PAGE_SIZE_KEY, pageSize);
+        return conf;
+    }
+
+    /**
+     * @param pages maximum number of pages to read ahead of a sequential reader; 0 disables
+     *              readahead
+     */
+    public static void setMaxReadahead(int pages) {
+        maxReadahead = pages;
+    }
+
+    public static int getMaxReadahead() {
+        return maxReadahead;
+    }
+
+    /**
+     * Waits until every prefetch submitted so far has finished, e.g. so that clearing the page
+     * cache is not followed by prefetches of an earlier reader repopulating it.
+     * @throws InterruptedException
+     */
+    public static void awaitPrefetches() throws InterruptedException {
+        synchronized (PREFETCH_LOCK) {
+            while (pendingPrefetches > 0) {
+                PREFETCH_LOCK.wait();
+            }
+        }
+    }
+
+    /**
+     * @return number of page prefetches issued by all streams since the start of the process
+     */
+    public static long prefetchesIssued() {
+        return prefetchesIssued.get();
+    }
+
+    private static void prefetchDone() {
+        synchronized (PREFETCH_LOCK) {
+            if (--pendingPrefetches == 0) {
+                PREFETCH_LOCK.notifyAll();
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getPrefetcher() {
+        if (prefetcher == null) {
+            prefetcher = Executors.newFixedThreadPool(PREFETCH_THREADS, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "page-cache-prefetch");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return prefetcher;
+    }
+
+    @Override
+    public void initialize(URI name, Configuration conf) throws IOException {
+        super.initialize(name, conf);
+        this.cache = PageCache.getOrCreate(conf.getLong(BUDGET_KEY, 256L << 20),
+            conf.getInt(PAGE_SIZE_KEY, PageCache.DEFAULT_PAGE_SIZE));
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+        Path targetPath = toTarget(f);
+        long length = target.getFileStatus(targetPath).getLen();
+        int fileId = cache.fileId(target.makeQualified(targetPath).toString());
+        return new FSDataInputStream(new CachingInputStream(target.open(targetPath, bufferSize), fileId, length));
+    }
+
+    /**
+     * Reads a file of the wrapped file system through the page cache.
+     */
+    private class CachingInputStream extends FSInputStream implements PageCache.PageSource {
+
+        private final FSDataInputStream in;
+        private final int fileId;
+        private final long length;
+        private final int pageSize;
+        private final byte[] single = new byte[1];
+        private long pos;
+
+        // Sequential runs tracked for readahead, in no particular order; guarded by runs itself
+        private final SequentialRun[] runs = new SequentialRun[TRACKED_RUNS];
+        private long clock;
+
+        CachingInputStream(FSDataInputStream in, int fileId, long length) {
+            this.in = in;
+            this.fileId = fileId;
+            this.length = length;
+            this.pageSize = cache.getPageSize();
+        }
+
+        @Override
+        public int readPage(long page, byte[] buf) throws IOException {
+            long start = page * pageSize;
+            int n = (int) Math.min(pageSize, length - start);
+            in.readFully(start, buf, 0, n);
+            return n;
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            if (pos < 0 || pos > length) {
+                throw new EOFException("Cannot seek to " + pos + " in a file of " + length + " bytes");
+            }
+            this.pos = pos;
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return pos;
+        }
+
+        @Override
+        public boolean seekToNewSource(long targetPos) throws IOException {
+            return false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = read(pos, b, off, len);
+            if (n > 0) {
+                pos += n;
+            }
+            return n;
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= length) {
+                return -1;
+            }
+            len = (int) Math.min(len, length - position);
+            readahead(position / pageSize, (position + len - 1) / pageSize);
+            int total = 0;
+            while (total < len) {
+                long page = position / pageSize;
+                int pageOffset = (int) (position - page * pageSize);
+                int n = cache.read(fileId, page, pageOffset, b, off + total, len - total, this);
+                position += n;
+                total += n;
+            }
+            return total;
+        }
+
+        @Override
+        public void readFully(long position, byte[] b, int off, int len) throws IOException {
+            if (position + len > length) {
+                throw new EOFException("Cannot read " + len + " bytes at " + position + " from a file of "
+                    + length + " bytes");
+            }
+            read(position, b, off, len);
+        }
+
+        @Override
+        public void readFully(long position, byte[] b) throws IOException {
+            readFully(position, b, 0, b.length);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(length - pos, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private void readahead(long firstPage, long lastPageOfRead) {
+            int max = maxReadahead;
+            if (max <= 0) {
+                return;
+            }
+            long from, to;
+            synchronized (runs) {
+                SequentialRun run = continuedRun(firstPage);
+                if (run == null) {
+                    run = leastRecentlyUsedRun();
+                    run.lastPage = lastPageOfRead;
+                    run.sequentialPages = 0;
+                    run.window = 0;
+                    run.prefetchedUpTo = -1;
+                } else {
+                    run.sequentialPages += lastPageOfRead - run.lastPage;
+                    run.lastPage = lastPageOfRead;
+                }
+                run.lastUsed = ++clock;
+                if (run.sequentialPages < SEQUENTIAL_TRIGGER || run.prefetchedUpTo - lastPageOfRead > run.window / 2) {
+                    return;
+                }
+
+                run.window = (run.window == 0) ? Math.min(INITIAL_WINDOW, max) : Math.min(run.window * 2, max);
+                from = Math.max(run.prefetchedUpTo, lastPageOfRead) + 1;
+                to = Math.min(lastPageOfRead + run.window, (length - 1) / pageSize);
+                if (from > to) {
+                    return;
+                }
+                run.prefetchedUpTo = to;
+            }
+
+            ExecutorService executor = getPrefetcher();
+            prefetchesIssued.addAndGet(to - from + 1);
+            for (long page = from; page <= to; page++) {
+                final long p = page;
+                synchronized (PREFETCH_LOCK) {
+                    pendingPrefetches++;
+                }
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            cache.prefetch(fileId, p, CachingInputStream.this);
+                        } catch (IOException e) {
+                            // Best effort; the page is fetched on demand if it is read
+                        } finally {
+                            prefetchDone();
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * @return the tracked run that a read starting at firstPage continues, or null
+         */
+        private SequentialRun continuedRun(long firstPage) {
+            for (SequentialRun run : runs) {
+                if (run != null && (firstPage == run.lastPage || firstPage == run.lastPage + 1)) {
+                    return run;
+                }
+            }
+            return null;
+        }
+
+        private SequentialRun leastRecentlyUsedRun() {
+            SequentialRun oldest = null;
+            for (int i = 0; i < runs.length; i++) {
+                if (runs[i] == null) {
+                    return runs[i] = new SequentialRun();
+                }
+                if (oldest == null || runs[i].lastUsed < oldest.lastUsed) {
+                    oldest = runs[i];
+                }
+            }
+            return oldest;
+        }
+    }
+
+    /**
+     * Readahead state of one sequential run: last page read, number of consecutive pages read,
+     * readahead window, and last page requested from the prefetcher.
+     */
+    private static class SequentialRun {
+        long lastPage;
+        long sequentialPages;
+        int window;
+        long prefetchedUpTo = -1;
+        long lastUsed;
+    }
+}
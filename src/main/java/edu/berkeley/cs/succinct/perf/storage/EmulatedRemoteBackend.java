@@ -0,0 +1,44 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Reads the data of another backend through an EmulatedRemoteFileSystem, so that every read
+ * pays the configured remote latency, jitter and bandwidth.
+ */
+public class EmulatedRemoteBackend extends WrappedBackend {
+
+    private final long latencyMicros;
+    private final long jitterMicros;
+    private final double bandwidthMBps;
+
+    /**
+     * @param backend backend whose data is read
+     * @param latencyMicros latency of a round-trip, in microseconds
+     * @param jitterMicros mean of the jitter added to each round-trip, in microseconds
+     * @param bandwidthMBps link bandwidth in MB/s; 0 for unlimited
+     */
+    public EmulatedRemoteBackend(HadoopStorageBackend backend, long latencyMicros, long jitterMicros,
+        double bandwidthMBps) {
+        super(backend);
+        this.latencyMicros = latencyMicros;
+        this.jitterMicros = jitterMicros;
+        this.bandwidthMBps = bandwidthMBps;
+    }
+
+    @Override
+    public String getName() {
+        return "remote(" + backend.getName() + ", " + latencyMicros + "us +" + jitterMicros + "us, "
+            + (bandwidthMBps > 0 ? bandwidthMBps + " MB/s" : "unlimited") + ")";
+    }
+
+    @Override
+    protected String getScheme() {
+        return EmulatedRemoteFileSystem.SCHEME;
+    }
+
+    @Override
+    protected Configuration register(Configuration conf, String targetScheme) {
+        return EmulatedRemoteFileSystem.register(conf, targetScheme, latencyMicros, jitterMicros, bandwidthMBps);
+    }
+}
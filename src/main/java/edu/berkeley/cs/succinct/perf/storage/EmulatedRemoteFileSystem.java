@@ -0,0 +1,264 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A read-only Hadoop FileSystem that wraps another one and makes it behave like remote
+ * storage, so that stream benchmarks can predict HDFS or object-store latency on one machine.
+ *
+ * Paths are those of the wrapped file system under remote://. Reads are delayed according to
+ * a simple model:
+ * <ul>
+ *   <li>a read that does not continue where the same thread's previous read on the stream
+ *   ended (a seek or a positional read) is a round-trip, and waits latency plus an
+ *   exponentially distributed jitter with the given mean. Continuity is tracked per thread,
+ *   since one stream is shared by all reader threads of a Succinct structure: each thread is
+ *   treated as its own sequential reader, as if it held its own connection</li>
+ *   <li>every byte read is transferred over a link of the given bandwidth, shared by all
+ *   streams with the same settings, so concurrent readers queue behind each other</li>
+ * </ul>
+ * Round-trips, bytes and the total injected delay are counted, see printStats().
+ *
+ * Hadoop's FileSystem cache is disabled for remote://, so that backends with different
+ * settings in one JVM each get an instance with their own settings.
+ */
+public class EmulatedRemoteFileSystem extends WrappingFileSystem {
+
+    public static final String SCHEME = "remote";
+
+    public static final String LATENCY_KEY = "succinct.perf.remote.latency.us";
+    public static final String JITTER_KEY = "succinct.perf.remote.jitter.us";
+    public static final String BANDWIDTH_KEY = "succinct.perf.remote.bandwidth.mbps";
+
+    // Delays shorter than this are accumulated rather than slept, since parking is not precise
+    private static final long MIN_SLEEP_NANOS = 20000;
+
+    private static final LongAdder ROUND_TRIPS = new LongAdder();
+    private static final LongAdder BYTES_READ = new LongAdder();
+    private static final LongAdder INJECTED_NANOS = new LongAdder();
+    // Time at which each emulated link is free, by settings
+    private static final ConcurrentMap<String, AtomicLong> LINKS = new ConcurrentHashMap<>();
+
+    private long latencyNanos;
+    private long jitterNanos;
+    private double nanosPerByte;
+    private AtomicLong linkFreeAt;
+
+    /**
+     * Registers the file system in a configuration, so that remote:// paths resolve to it.
+     * @param conf the configuration
+     * @param targetScheme scheme of the wrapped file system, e.g. hdfs or file
+     * @param latencyMicros latency of a round-trip, in microseconds
+     * @param jitterMicros mean of the jitter added to each round-trip, in microseconds
+     * @param bandwidthMBps link bandwidth in MB/s; 0 for unlimited
+     * @return the configuration
+     */
+    public static Configuration register(Configuration conf, String targetScheme, long latencyMicros,
+        long jitterMicros, double bandwidthMBps) {
+        register(conf, SCHEME, EmulatedRemoteFileSystem.class, targetScheme);
+        conf.setBoolean("fs." + SCHEME + ".impl.disable.cache", true);
+        conf.setLong(LATENCY_KEY, latencyMicros);
+        conf.setLong(JITTER_KEY, jitterMicros);
+        conf.setFloat(BANDWIDTH_KEY, (float) bandwidthMBps);
+        return conf;
+    }
+
+    public static void printStats() {
+        System.out.println("Emulated remote storage: " + ROUND_TRIPS.sum() + " round-trips, " + BYTES_READ.sum()
+            + " bytes read, " + INJECTED_NANOS.sum() / 1000000 + " ms of injected delay");
+    }
+
+    @Override
+    public void initialize(URI name, Configuration conf) throws IOException {
+        super.initialize(name, conf);
+        this.latencyNanos = conf.getLong(LATENCY_KEY, 0) * 1000;
+        this.jitterNanos = conf.getLong(JITTER_KEY, 0) * 1000;
+        double bandwidth = conf.getFloat(BANDWIDTH_KEY, 0);
+        this.nanosPerByte = bandwidth > 0 ? 1e9 / (bandwidth * 1024 * 1024) : 0;
+        this.linkFreeAt = LINKS.computeIfAbsent(latencyNanos + "/" + jitterNanos + "/" + bandwidth,
+            k -> new AtomicLong(System.nanoTime()));
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+        // Opening a file is a round-trip to the storage service
+        roundTrip();
+        return new FSDataInputStream(new EmulatedInputStream(target.open(toTarget(f), bufferSize)));
+    }
+
+    @Override
+    public FileStatus getFileStatus(Path f) throws IOException {
+        roundTrip();
+        return super.getFileStatus(f);
+    }
+
+    private void roundTrip() {
+        long delay = latencyNanos;
+        if (jitterNanos > 0) {
+            delay += (long) (-jitterNanos * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+        }
+        ROUND_TRIPS.increment();
+        sleep(delay);
+    }
+
+    /**
+     * Reserves the link for a transfer of n bytes after the transfers already queued on it, and
+     * returns the time at which the transfer completes.
+     */
+    private long transfer(long n) {
+        long duration = (long) (n * nanosPerByte);
+        while (true) {
+            long now = System.nanoTime();
+            long freeAt = linkFreeAt.get();
+            long done = (freeAt - now > 0 ? freeAt : now) + duration;
+            if (linkFreeAt.compareAndSet(freeAt, done)) {
+                return done;
+            }
+        }
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        INJECTED_NANOS.add(nanos);
+        waitUntil(System.nanoTime() + nanos);
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > MIN_SLEEP_NANOS) {
+                LockSupport.parkNanos(remaining);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Delays the reads of a wrapped stream according to the model of the enclosing file system.
+     */
+    private class EmulatedInputStream extends FSInputStream {
+
+        private final FSDataInputStream in;
+        private long pos;
+        // Per reader thread: end of its previous read (a read starting elsewhere is a new
+        // round-trip), and bytes read but not yet charged to the link
+        private final ThreadLocal<long[]> readerState = ThreadLocal.withInitial(() -> new long[2]);
+
+        EmulatedInputStream(FSDataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            in.seek(pos);
+            this.pos = pos;
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return pos;
+        }
+
+        @Override
+        public boolean seekToNewSource(long targetPos) throws IOException {
+            return false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            beforeRead(pos);
+            int b = in.read();
+            if (b >= 0) {
+                pos++;
+                afterRead(pos, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            beforeRead(pos);
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                pos += n;
+                afterRead(pos, n);
+            }
+            return n;
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len) throws IOException {
+            beforeRead(position);
+            int n = in.read(position, b, off, len);
+            if (n > 0) {
+                afterRead(position + n, n);
+            }
+            return n;
+        }
+
+        @Override
+        public void readFully(long position, byte[] b, int off, int len) throws IOException {
+            beforeRead(position);
+            in.readFully(position, b, off, len);
+            afterRead(position + len, len);
+        }
+
+        @Override
+        public void readFully(long position, byte[] b) throws IOException {
+            readFully(position, b, 0, b.length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private void beforeRead(long position) {
+            if (position != readerState.get()[0]) {
+                roundTrip();
+            }
+        }
+
+        private void afterRead(long end, int n) {
+            long[] state = readerState.get();
+            state[0] = end;
+            BYTES_READ.add(n);
+            if (nanosPerByte == 0) {
+                return;
+            }
+            // Small sequential reads are batched into one link reservation, to avoid per-byte waits
+            state[1] += n;
+            if (state[1] * nanosPerByte < MIN_SLEEP_NANOS) {
+                return;
+            }
+            long done = transfer(state[1]);
+            state[1] = 0;
+            long delay = done - System.nanoTime();
+            if (delay > 0) {
+                INJECTED_NANOS.add(delay);
+                waitUntil(done);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import edu.berkeley.cs.succinct.buffers.SuccinctBuffer;
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+import edu.berkeley.cs.succinct.perf.BenchmarkUtils;
+import edu.berkeley.cs.succinct.perf.SegmentedBuffer;
+import edu.berkeley.cs.succinct.streams.SuccinctFileStream;
+import edu.berkeley.cs.succinct.streams.SuccinctStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+
+/**
+ * Reads data through a Hadoop FileSystem. This is the default for the stream benchmarks: paths
+ * are resolved against the default file system of BenchmarkUtils.getConf(), i.e. HDFS if
+ * HADOOP_CONF_DIR points to a cluster configuration and the local file system otherwise.
+ * Buffers are read fully into off-heap memory.
+ *
+ * Subclasses change where data is read from by overriding getPath and getConf.
+ */
+public class HadoopStorageBackend implements StorageBackend {
+
+    @Override
+    public String getName() {
+        return "hadoop";
+    }
+
+    /**
+     * @param path path of the file as given on the command line
+     * @return the Hadoop path it resolves to
+     * @throws IOException
+     */
+    public Path getPath(String path) throws IOException {
+        return new Path(path);
+    }
+
+    public Configuration getConf() throws IOException {
+        return BenchmarkUtils.getConf();
+    }
+
+    @Override
+    public SegmentedBuffer readData(String path) throws IOException {
+        Path hadoopPath = getPath(path);
+        FileSystem fs = hadoopPath.getFileSystem(getConf());
+        long size = fs.getFileStatus(hadoopPath).getLen();
+        try (FSDataInputStream in = fs.open(hadoopPath)) {
+            return SegmentedBuffer.readFully(in, size, true);
+        }
+    }
+
+    @Override
+    public SuccinctBuffer openBuffer(String path) throws IOException {
+        return openFileBuffer(path);
+    }
+
+    @Override
+    public SuccinctFileBuffer openFileBuffer(String path) throws IOException {
+        Path hadoopPath = getPath(path);
+        SegmentedBuffer.checkFitsByteBuffer(hadoopPath.getFileSystem(getConf()).getFileStatus(hadoopPath).getLen());
+        return new SuccinctFileBuffer(readData(path).asByteBuffer());
+    }
+
+    @Override
+    public SuccinctStream openStream(String path) throws IOException {
+        return new SuccinctStream(getPath(path), getConf());
+    }
+
+    @Override
+    public SuccinctFileStream openFileStream(String path) throws IOException {
+        return new SuccinctFileStream(getPath(path), getConf());
+    }
+}
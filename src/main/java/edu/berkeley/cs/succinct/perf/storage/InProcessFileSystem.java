@@ -0,0 +1,148 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import edu.berkeley.cs.succinct.perf.SegmentedBuffer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.util.Progressable;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A read-only Hadoop FileSystem over an in-process, off-heap file store; the stand-in for
+ * Tachyon's memory tier. Files are copied into the store from the local file system on first
+ * access (like TachyonUtil.copyFile does for tfs) and are then served from memory under the
+ * memtfs:// scheme.
+ */
+public class InProcessFileSystem extends FileSystem {
+
+    public static final String SCHEME = "memtfs";
+    private static final long BLOCK_SIZE = 512L << 20;
+
+    private static final ConcurrentHashMap<String, SegmentedBuffer> STORE =
+        new ConcurrentHashMap<String, SegmentedBuffer>();
+
+    private URI uri;
+    private Path workingDir = new Path("/");
+
+    /**
+     * Registers the file system in a configuration, so that memtfs:// paths resolve to it.
+     * @param conf the configuration
+     * @return the configuration
+     */
+    public static Configuration register(Configuration conf) {
+        conf.set("fs." + SCHEME + ".impl", InProcessFileSystem.class.getName());
+        return conf;
+    }
+
+    /**
+     * Returns the stored copy of a local file, copying it into the store first if needed.
+     * @param localPath path of the file on the local file system
+     * @return the stored copy
+     * @throws IOException
+     */
+    public static SegmentedBuffer load(String localPath) throws IOException {
+        SegmentedBuffer stored = STORE.get(localPath);
+        if (stored != null) {
+            return stored;
+        }
+        synchronized (STORE) {
+            stored = STORE.get(localPath);
+            if (stored == null) {
+                System.out.println("File does not exist in in-process store. Copying file from local...");
+                long start = System.currentTimeMillis();
+                try (FileInputStream in = new FileInputStream(localPath)) {
+                    stored = SegmentedBuffer.readFully(in, in.getChannel().size(), true);
+                }
+                long stop = System.currentTimeMillis();
+                System.out.println("Copied file to in-process store!\nTime taken: " + (stop - start) + " ms.");
+                STORE.put(localPath, stored);
+            }
+            return stored;
+        }
+    }
+
+    @Override
+    public void initialize(URI name, Configuration conf) throws IOException {
+        super.initialize(name, conf);
+        setConf(conf);
+        this.uri = URI.create(SCHEME + ":///");
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public URI getUri() {
+        return uri;
+    }
+
+    @Override
+    public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+        return new FSDataInputStream(new SegmentedBufferInputStream(load(localPath(f))));
+    }
+
+    @Override
+    public FileStatus getFileStatus(Path f) throws IOException {
+        return new FileStatus(load(localPath(f)).size(), false, 1, BLOCK_SIZE, 0, f);
+    }
+
+    @Override
+    public FileStatus[] listStatus(Path f) throws IOException {
+        return new FileStatus[] { getFileStatus(f) };
+    }
+
+    @Override
+    public FSDataOutputStream create(Path f, FsPermission permission, boolean overwrite, int bufferSize,
+        short replication, long blockSize, Progressable progress) throws IOException {
+        throw new IOException(SCHEME + " is read-only");
+    }
+
+    @Override
+    public FSDataOutputStream append(Path f, int bufferSize, Progressable progress) throws IOException {
+        throw new IOException(SCHEME + " is read-only");
+    }
+
+    @Override
+    public boolean rename(Path src, Path dst) throws IOException {
+        throw new IOException(SCHEME + " is read-only");
+    }
+
+    @Override
+    public boolean delete(Path f, boolean recursive) throws IOException {
+        throw new IOException(SCHEME + " is read-only");
+    }
+
+    @Override
+    public boolean mkdirs(Path f, FsPermission permission) throws IOException {
+        throw new IOException(SCHEME + " is read-only");
+    }
+
+    @Override
+    public void setWorkingDirectory(Path dir) {
+        workingDir = dir;
+    }
+
+    @Override
+    public Path getWorkingDirectory() {
+        return workingDir;
+    }
+
+    private static String localPath(Path f) throws FileNotFoundException {
+        String path = f.toUri().getPath();
+        if (path == null || path.isEmpty()) {
+            throw new FileNotFoundException("No file at " + f);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,57 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import edu.berkeley.cs.succinct.perf.ProcessStats;
+import edu.berkeley.cs.succinct.perf.SegmentedBuffer;
+import edu.berkeley.cs.succinct.perf.TachyonUtil;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * An in-process stand-in for Tachyon, so that the TFS benchmarks run without a Tachyon master.
+ * The file is held off-heap in an InProcessFileSystem store (Tachyon's memory tier), and is
+ * loaded from there the same way TachyonUtil loads from tfs: copied into the heap or a direct
+ * buffer, or used in place (zero-copy) in MAPPED load mode. Streams read from the store through
+ * the memtfs:// Hadoop file system.
+ */
+public class InProcessTachyonBackend extends HadoopStorageBackend {
+
+    @Override
+    public String getName() {
+        return "tachyon-local";
+    }
+
+    @Override
+    public Path getPath(String path) throws IOException {
+        return new Path(InProcessFileSystem.SCHEME + "://" + new File(path).getAbsolutePath());
+    }
+
+    @Override
+    public Configuration getConf() throws IOException {
+        return InProcessFileSystem.register(new Configuration());
+    }
+
+    @Override
+    public SegmentedBuffer readData(String path) throws IOException {
+        SegmentedBuffer stored = InProcessFileSystem.load(new File(path).getAbsolutePath());
+        TachyonUtil.LoadMode mode = TachyonUtil.getLoadMode();
+
+        System.out.println("Reading in-process store file (" + mode + ")...");
+        boolean peakReset = ProcessStats.resetPeakRss();
+        long heapBefore = ProcessStats.heapUsedBytes();
+        long start = System.nanoTime();
+
+        SegmentedBuffer data;
+        if (mode == TachyonUtil.LoadMode.MAPPED) {
+            data = stored;
+        } else {
+            data = SegmentedBuffer.readFully(new SegmentedBufferInputStream(stored), stored.size(),
+                mode == TachyonUtil.LoadMode.DIRECT);
+        }
+
+        ProcessStats.printLoadStats(data.size(), System.nanoTime() - start, heapBefore, peakReset);
+        return data;
+    }
+}
@@ -0,0 +1,89 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import edu.berkeley.cs.succinct.StorageMode;
+import edu.berkeley.cs.succinct.buffers.SuccinctBuffer;
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+import edu.berkeley.cs.succinct.perf.SegmentedBuffer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads data from the local file system, either into the Java heap (MEMORY_ONLY) or by
+ * memory-mapping it (MEMORY_MAPPED). Streams always read through the local Hadoop file system,
+ * regardless of the configured default file system.
+ *
+ * With more than one load thread, MEMORY_ONLY data is read by a ParallelFileLoader into an
+ * off-heap buffer, and the Succinct structures are built over that buffer.
+ */
+public class LocalStorageBackend extends HadoopStorageBackend {
+
+    private final StorageMode storageMode;
+    private final int loadThreads;
+
+    public LocalStorageBackend(StorageMode storageMode) {
+        this(storageMode, 1);
+    }
+
+    /**
+     * @param storageMode how the data is brought into memory
+     * @param loadThreads number of threads reading MEMORY_ONLY data
+     */
+    public LocalStorageBackend(StorageMode storageMode, int loadThreads) {
+        this.storageMode = storageMode;
+        this.loadThreads = loadThreads;
+    }
+
+    private boolean loadInParallel() {
+        return storageMode == StorageMode.MEMORY_ONLY && loadThreads > 1;
+    }
+
+    @Override
+    public String getName() {
+        return storageMode == StorageMode.MEMORY_MAPPED ? "mmap" : "heap";
+    }
+
+    @Override
+    public Path getPath(String path) throws IOException {
+        return new Path(new File(path).getAbsoluteFile().toURI());
+    }
+
+    @Override
+    public Configuration getConf() throws IOException {
+        return new Configuration();
+    }
+
+    @Override
+    public SegmentedBuffer readData(String path) throws IOException {
+        if (storageMode == StorageMode.MEMORY_MAPPED) {
+            return SegmentedBuffer.map(path);
+        }
+        if (loadInParallel()) {
+            return ParallelFileLoader.load(path, loadThreads);
+        }
+        try (FileInputStream in = new FileInputStream(path)) {
+            return SegmentedBuffer.readFully(in, in.getChannel().size(), false);
+        }
+    }
+
+    @Override
+    public SuccinctBuffer openBuffer(String path) throws IOException {
+        if (loadInParallel()) {
+            SegmentedBuffer.checkFitsByteBuffer(new File(path).length());
+            return new SuccinctBuffer(readData(path).asByteBuffer());
+        }
+        return new SuccinctBuffer(path, storageMode);
+    }
+
+    @Override
+    public SuccinctFileBuffer openFileBuffer(String path) throws IOException {
+        if (loadInParallel()) {
+            SegmentedBuffer.checkFitsByteBuffer(new File(path).length());
+            return new SuccinctFileBuffer(readData(path).asByteBuffer());
+        }
+        return new SuccinctFileBuffer(path, storageMode);
+    }
+}
@@ -0,0 +1,365 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-budget cache of file pages, stored off-heap in direct memory.
+ *
+ * The frames are divided among independent stripes, each with its own lock, index and CLOCK
+ * eviction, and a page always maps to the same stripe; concurrent readers of different pages
+ * therefore rarely contend. Misses are fetched from the source without holding the stripe
+ * lock, so a slow fetch does not block hits on the same stripe.
+ */
+public class PageCache {
+
+    public static final int DEFAULT_PAGE_SIZE = 64 << 10;
+
+    private static final int MAX_STRIPES = 64;
+    private static final int SLAB_SIZE = 1 << 30;
+
+    private static volatile PageCache shared;
+
+    /**
+     * Reads pages that are not in the cache.
+     */
+    public interface PageSource {
+        /**
+         * Reads a page in full, or up to the end of the file for the last page.
+         * @param page index of the page
+         * @param buf buffer of at least one page
+         * @return number of bytes in the page
+         * @throws IOException
+         */
+        int readPage(long page, byte[] buf) throws IOException;
+    }
+
+    private final int pageSize;
+    private final long budget;
+    private final Stripe[] stripes;
+    private final ThreadLocal<byte[]> fetchBuffers;
+
+    private final ConcurrentHashMap<String, Integer> fileIds = new ConcurrentHashMap<String, Integer>();
+    private final AtomicInteger nextFileId = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesFetched = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder prefetches = new LongAdder();
+
+    /**
+     * @param budget memory budget in bytes
+     * @param pageSize page size in bytes
+     */
+    public PageCache(long budget, final int pageSize) {
+        long numFrames = budget / pageSize;
+        if (numFrames < 1 || numFrames > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Page cache budget of " + budget + " bytes does not fit pages of "
+                + pageSize + " bytes");
+        }
+        this.pageSize = pageSize;
+        this.budget = numFrames * pageSize;
+        this.fetchBuffers = new ThreadLocal<byte[]>() {
+            @Override
+            protected byte[] initialValue() {
+                return new byte[pageSize];
+            }
+        };
+
+        ByteBuffer[] frames = allocateFrames((int) numFrames, pageSize);
+        int numStripes = Integer.highestOneBit((int) Math.min(MAX_STRIPES, numFrames));
+        stripes = new Stripe[numStripes];
+        int framesPerStripe = frames.length / numStripes;
+        for (int s = 0; s < numStripes; s++) {
+            int from = s * framesPerStripe;
+            int to = (s == numStripes - 1) ? frames.length : from + framesPerStripe;
+            ByteBuffer[] stripeFrames = new ByteBuffer[to - from];
+            System.arraycopy(frames, from, stripeFrames, 0, to - from);
+            stripes[s] = new Stripe(stripeFrames);
+        }
+    }
+
+    /**
+     * Returns the process-wide cache, creating it on first use. Later calls return the same
+     * cache regardless of their arguments.
+     */
+    public static PageCache getOrCreate(long budget, int pageSize) {
+        if (shared == null) {
+            synchronized (PageCache.class) {
+                if (shared == null) {
+                    shared = new PageCache(budget, pageSize);
+                    System.out.println("Created off-heap page cache: " + shared.budget + " bytes in "
+                        + pageSize + " byte pages, " + shared.stripes.length + " stripes");
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * @return the process-wide cache, or null if none has been created
+     */
+    public static PageCache getShared() {
+        return shared;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @param name qualified name of a file
+     * @return an id identifying the file's pages in the cache
+     */
+    public int fileId(String name) {
+        Integer id = fileIds.get(name);
+        if (id == null) {
+            Integer newId = nextFileId.getAndIncrement();
+            id = fileIds.putIfAbsent(name, newId);
+            if (id == null) {
+                id = newId;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Copies bytes out of a page, fetching the page from the source if it is not cached.
+     * @param fileId id of the file, from fileId()
+     * @param page index of the page
+     * @param pageOffset offset within the page
+     * @param dst destination buffer
+     * @param off offset in dst
+     * @param len maximum number of bytes to copy
+     * @param source source of the page on a miss
+     * @return number of bytes copied; 0 if pageOffset is past the end of the (last) page
+     * @throws IOException
+     */
+    public int read(int fileId, long page, int pageOffset, byte[] dst, int off, int len, PageSource source)
+        throws IOException {
+        long key = ((long) fileId << 40) | page;
+        Stripe stripe = stripes[stripeIndex(key)];
+
+        synchronized (stripe) {
+            int frame = stripe.lookup(key);
+            if (frame >= 0) {
+                hits.increment();
+                return stripe.copy(frame, pageOffset, dst, off, len);
+            }
+        }
+
+        misses.increment();
+        byte[] buf = fetchBuffers.get();
+        int pageLength = source.readPage(page, buf);
+        bytesFetched.add(pageLength);
+
+        synchronized (stripe) {
+            int frame = stripe.lookup(key);
+            if (frame < 0) {
+                // Not inserted by a concurrent miss in the meantime
+                frame = stripe.insert(key, buf, pageLength, true);
+            }
+            return stripe.copy(frame, pageOffset, dst, off, len);
+        }
+    }
+
+    /**
+     * Fetches a page into the cache ahead of use, unless it is already cached. Prefetched pages
+     * are inserted unreferenced, so they are the first to be evicted if they are never read.
+     * @param fileId id of the file, from fileId()
+     * @param page index of the page
+     * @param source source of the page
+     * @throws IOException
+     */
+    public void prefetch(int fileId, long page, PageSource source) throws IOException {
+        long key = ((long) fileId << 40) | page;
+        Stripe stripe = stripes[stripeIndex(key)];
+
+        synchronized (stripe) {
+            if (stripe.contains(key)) {
+                return;
+            }
+        }
+
+        byte[] buf = fetchBuffers.get();
+        int pageLength = source.readPage(page, buf);
+        bytesFetched.add(pageLength);
+        prefetches.increment();
+
+        synchronized (stripe) {
+            if (!stripe.contains(key)) {
+                stripe.insert(key, buf, pageLength, false);
+            }
+        }
+    }
+
+    /**
+     * Drops all cached pages, e.g. to start a benchmark run from a cold cache.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), bytesFetched.sum(), evictions.sum(), prefetches.sum());
+    }
+
+    /**
+     * Prints the cache statistics accumulated since before was taken, if a cache is in use.
+     * @param before statistics at the start of the period, from stats()
+     */
+    public static void printStats(Stats before) {
+        PageCache cache = shared;
+        if (cache != null) {
+            System.out.println("Page cache: " + cache.stats().since(before));
+        }
+    }
+
+    /**
+     * @return statistics of the process-wide cache, or null if none has been created
+     */
+    public static Stats sharedStats() {
+        PageCache cache = shared;
+        return cache == null ? null : cache.stats();
+    }
+
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long bytesFetched;
+        public final long evictions;
+        public final long prefetches;
+
+        Stats(long hits, long misses, long bytesFetched, long evictions, long prefetches) {
+            this.hits = hits;
+            this.misses = misses;
+            this.bytesFetched = bytesFetched;
+            this.evictions = evictions;
+            this.prefetches = prefetches;
+        }
+
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        /**
+         * @param before earlier statistics of the same cache; null for its creation
+         * @return the statistics accumulated since before
+         */
+        public Stats since(Stats before) {
+            if (before == null) {
+                return this;
+            }
+            return new Stats(hits - before.hits, misses - before.misses, bytesFetched - before.bytesFetched,
+                evictions - before.evictions, prefetches - before.prefetches);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hit rate = %.4f (%d hits, %d misses), bytes fetched = %d, evictions = %d,"
+                + " pages prefetched = %d", hitRate(), hits, misses, bytesFetched, evictions, prefetches);
+        }
+    }
+
+    private int stripeIndex(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (stripes.length - 1);
+    }
+
+    private static ByteBuffer[] allocateFrames(int numFrames, int pageSize) {
+        ByteBuffer[] frames = new ByteBuffer[numFrames];
+        int framesPerSlab = Math.max(1, SLAB_SIZE / pageSize);
+        for (int i = 0; i < numFrames; i += framesPerSlab) {
+            int n = Math.min(framesPerSlab, numFrames - i);
+            ByteBuffer slab = ByteBuffer.allocateDirect(n * pageSize);
+            for (int j = 0; j < n; j++) {
+                frames[i + j] = slab.slice(j * pageSize, pageSize);
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * A CLOCK-managed set of frames. Not thread-safe; guarded by the stripe's monitor.
+     */
+    private class Stripe {
+        private final ByteBuffer[] frames;
+        private final long[] keys;
+        private final int[] lengths;
+        private final boolean[] referenced;
+        private final HashMap<Long, Integer> index;
+        private int used;
+        private int hand;
+
+        Stripe(ByteBuffer[] frames) {
+            this.frames = frames;
+            this.keys = new long[frames.length];
+            this.lengths = new int[frames.length];
+            this.referenced = new boolean[frames.length];
+            this.index = new HashMap<Long, Integer>(frames.length * 2);
+        }
+
+        int lookup(long key) {
+            Integer frame = index.get(key);
+            if (frame == null) {
+                return -1;
+            }
+            referenced[frame] = true;
+            return frame;
+        }
+
+        boolean contains(long key) {
+            return index.containsKey(key);
+        }
+
+        int insert(long key, byte[] data, int length, boolean reference) {
+            int frame;
+            if (used < frames.length) {
+                frame = used++;
+            } else {
+                // Give every recently referenced frame a second chance
+                while (referenced[hand]) {
+                    referenced[hand] = false;
+                    hand = (hand + 1) % frames.length;
+                }
+                frame = hand;
+                hand = (hand + 1) % frames.length;
+                index.remove(keys[frame]);
+                evictions.increment();
+            }
+            frames[frame].put(0, data, 0, length);
+            keys[frame] = key;
+            lengths[frame] = length;
+            referenced[frame] = reference;
+            index.put(key, frame);
+            return frame;
+        }
+
+        void clear() {
+            index.clear();
+            Arrays.fill(referenced, false);
+            used = 0;
+            hand = 0;
+        }
+
+        int copy(int frame, int pageOffset, byte[] dst, int off, int len) {
+            int n = Math.min(len, lengths[frame] - pageOffset);
+            if (n <= 0) {
+                return 0;
+            }
+            frames[frame].get(pageOffset, dst, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import edu.berkeley.cs.succinct.perf.SegmentedBuffer;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a local file into a preallocated off-heap buffer with several threads. The file is
+ * split into fixed-size chunks that the threads claim in turn and fill with positional reads on
+ * a shared channel. No thread waits on another, and a slow chunk does not hold up the rest.
+ */
+public class ParallelFileLoader {
+
+    // Divides every segment size, so no chunk crosses a segment boundary
+    private static final int CHUNK_SIZE = 64 << 20;
+
+    /**
+     * @param path path of the file
+     * @param numThreads number of reader threads
+     * @return the contents of the file, off-heap
+     * @throws IOException
+     */
+    public static SegmentedBuffer load(String path, int numThreads) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            final FileChannel channel = file.getChannel();
+            final long size = channel.size();
+            final SegmentedBuffer buf = SegmentedBuffer.allocate(size, true);
+            final long numChunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            final AtomicLong nextChunk = new AtomicLong();
+
+            int threads = (int) Math.max(1, Math.min(numThreads, numChunks));
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<Void>> futures = new ArrayList<Future<Void>>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        long chunk;
+                        while ((chunk = nextChunk.getAndIncrement()) < numChunks) {
+                            long start = chunk * CHUNK_SIZE;
+                            readFully(channel, buf.slice(start, (int) Math.min(CHUNK_SIZE, size - start)), start);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + path, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Could not load " + path, e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+            return buf;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int read = channel.read(dst, position);
+            if (read < 0) {
+                throw new IOException("File ended at " + position + "; expected " + dst.remaining() + " more bytes");
+            }
+            position += read;
+        }
+    }
+}
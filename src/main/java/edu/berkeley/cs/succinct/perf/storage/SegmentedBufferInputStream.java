@@ -0,0 +1,87 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import edu.berkeley.cs.succinct.perf.SegmentedBuffer;
+import org.apache.hadoop.fs.FSInputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * A seekable Hadoop input stream over a SegmentedBuffer.
+ */
+public class SegmentedBufferInputStream extends FSInputStream {
+
+    private final SegmentedBuffer buf;
+    private long pos;
+
+    public SegmentedBufferInputStream(SegmentedBuffer buf) {
+        this.buf = buf;
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+        if (pos < 0 || pos > buf.size()) {
+            throw new EOFException("Cannot seek to " + pos + " in a stream of " + buf.size() + " bytes");
+        }
+        this.pos = pos;
+    }
+
+    @Override
+    public long getPos() throws IOException {
+        return pos;
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) throws IOException {
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos >= buf.size()) {
+            return -1;
+        }
+        return buf.get(pos++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = read(pos, b, off, len);
+        if (n > 0) {
+            pos += n;
+        }
+        return n;
+    }
+
+    @Override
+    public int read(long position, byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= buf.size()) {
+            return -1;
+        }
+        int n = (int) Math.min(len, buf.size() - position);
+        buf.get(position, b, off, n);
+        return n;
+    }
+
+    @Override
+    public void readFully(long position, byte[] b, int off, int len) throws IOException {
+        if (position + len > buf.size()) {
+            throw new EOFException("Cannot read " + len + " bytes at " + position + " from a stream of "
+                + buf.size() + " bytes");
+        }
+        buf.get(position, b, off, len);
+    }
+
+    @Override
+    public void readFully(long position, byte[] b) throws IOException {
+        readFully(position, b, 0, b.length);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(buf.size() - pos, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,38 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import edu.berkeley.cs.succinct.buffers.SuccinctBuffer;
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+import edu.berkeley.cs.succinct.perf.SegmentedBuffer;
+import edu.berkeley.cs.succinct.streams.SuccinctFileStream;
+import edu.berkeley.cs.succinct.streams.SuccinctStream;
+
+import java.io.IOException;
+
+/**
+ * Where the serialized data of a benchmark lives and how it is brought into memory. Every
+ * benchmark class opens its data through a backend, so the same workload can be run over
+ * different storage by switching the backend alone.
+ */
+public interface StorageBackend {
+
+    /**
+     * @return name of the backend, as accepted by -backend
+     */
+    String getName();
+
+    /**
+     * Reads the raw contents of a file.
+     * @param path path of the file
+     * @return the contents of the file
+     * @throws IOException
+     */
+    SegmentedBuffer readData(String path) throws IOException;
+
+    SuccinctBuffer openBuffer(String path) throws IOException;
+
+    SuccinctFileBuffer openFileBuffer(String path) throws IOException;
+
+    SuccinctStream openStream(String path) throws IOException;
+
+    SuccinctFileStream openFileStream(String path) throws IOException;
+}
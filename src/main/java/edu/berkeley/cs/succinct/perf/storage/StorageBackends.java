@@ -0,0 +1,77 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import edu.berkeley.cs.succinct.StorageMode;
+
+/**
+ * Creates storage backends by name:
+ * <ul>
+ *   <li>heap: local file, read into the Java heap</li>
+ *   <li>mmap: local file, memory-mapped</li>
+ *   <li>hadoop: the default Hadoop file system (HDFS if HADOOP_CONF_DIR is set, else local)</li>
+ *   <li>tachyon-local: an in-process, offline stand-in for Tachyon</li>
+ *   <li>tfs: a live Tachyon file system (requires the master address)</li>
+ * </ul>
+ */
+public class StorageBackends {
+
+    public static final String NAMES = "heap, mmap, hadoop, tachyon-local or tfs";
+
+    public static StorageBackend forName(String name, String tachyonMasterLoc) {
+        return forName(name, tachyonMasterLoc, 1);
+    }
+
+    /**
+     * @param name name of the backend
+     * @param tachyonMasterLoc address of the Tachyon master, for tfs
+     * @param loadThreads number of threads reading local files into memory, for heap
+     * @return the backend
+     */
+    public static StorageBackend forName(String name, String tachyonMasterLoc, int loadThreads) {
+        switch (name) {
+            case "heap":
+                return new LocalStorageBackend(StorageMode.MEMORY_ONLY, loadThreads);
+            case "mmap":
+                return new LocalStorageBackend(StorageMode.MEMORY_MAPPED);
+            case "hadoop":
+                return new HadoopStorageBackend();
+            case "tachyon-local":
+                return new InProcessTachyonBackend();
+            case "tfs":
+                return new TachyonStorageBackend(tachyonMasterLoc);
+            default:
+                throw new IllegalArgumentException("Unknown storage backend: " + name + "; must be one of " + NAMES);
+        }
+    }
+
+    /**
+     * Makes all reads of a backend go through an EmulatedRemoteFileSystem.
+     * @param backend backend whose data is read
+     * @param latencyMicros latency of a round-trip, in microseconds
+     * @param jitterMicros mean of the jitter added to each round-trip, in microseconds
+     * @param bandwidthMBps link bandwidth in MB/s; 0 for unlimited
+     * @return the emulated backend
+     */
+    public static StorageBackend emulateRemote(StorageBackend backend, long latencyMicros, long jitterMicros,
+        double bandwidthMBps) {
+        if (!(backend instanceof HadoopStorageBackend)) {
+            throw new IllegalArgumentException("Backend " + backend.getName() + " is not read through Hadoop"
+                + " and cannot be wrapped in remote-storage emulation");
+        }
+        return new EmulatedRemoteBackend((HadoopStorageBackend) backend, latencyMicros, jitterMicros, bandwidthMBps);
+    }
+
+    /**
+     * Makes all reads of a backend go through the off-heap page cache.
+     * @param backend backend whose data is read
+     * @param budget memory budget of the page cache in bytes
+     * @param pageSize page size in bytes
+     * @return the cached backend
+     */
+    public static StorageBackend withPageCache(StorageBackend backend, long budget, int pageSize) {
+        if (!(backend instanceof HadoopStorageBackend)) {
+            throw new IllegalArgumentException("Backend " + backend.getName() + " is not read through Hadoop"
+                + " and cannot be cached");
+        }
+        return new CachedBackend((HadoopStorageBackend) backend, budget, pageSize);
+    }
+}
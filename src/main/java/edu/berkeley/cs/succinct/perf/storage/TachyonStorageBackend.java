@@ -0,0 +1,69 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import edu.berkeley.cs.succinct.buffers.SuccinctFileBuffer;
+import edu.berkeley.cs.succinct.perf.SegmentedBuffer;
+import edu.berkeley.cs.succinct.perf.TachyonUtil;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+
+/**
+ * Reads data from a live Tachyon file system. Buffers are loaded with TachyonUtil; streams read
+ * through Tachyon's Hadoop-compatible file system client under the tachyon:// scheme.
+ */
+public class TachyonStorageBackend extends HadoopStorageBackend {
+
+    private final String tachyonMasterLoc;
+
+    /**
+     * @param tachyonMasterLoc tachyon master address, e.g. tachyon://host:19998
+     */
+    public TachyonStorageBackend(String tachyonMasterLoc) {
+        this.tachyonMasterLoc = tachyonMasterLoc;
+    }
+
+    @Override
+    public String getName() {
+        return "tfs";
+    }
+
+    @Override
+    public Path getPath(String path) throws IOException {
+        String master = getMasterLoc();
+        master = master.endsWith("/") ? master : master + "/";
+        return new Path(master + path);
+    }
+
+    @Override
+    public Configuration getConf() throws IOException {
+        Configuration conf = super.getConf();
+        conf.set("fs.tachyon.impl", "tachyon.hadoop.TFS");
+        return conf;
+    }
+
+    @Override
+    public SegmentedBuffer readData(String path) throws IOException {
+        SegmentedBuffer data = TachyonUtil.getData(getMasterLoc(), path);
+        if (data == null) {
+            throw new IOException("Could not read " + path + " from tfs at " + tachyonMasterLoc);
+        }
+        return data;
+    }
+
+    @Override
+    public SuccinctFileBuffer openFileBuffer(String path) throws IOException {
+        SuccinctFileBuffer buffer = TachyonUtil.getFileBuffer(getMasterLoc(), path);
+        if (buffer == null) {
+            throw new IOException("Could not load " + path + " from tfs at " + tachyonMasterLoc);
+        }
+        return buffer;
+    }
+
+    private String getMasterLoc() {
+        if (tachyonMasterLoc == null) {
+            throw new IllegalArgumentException("Tachyon master path (-t) must be specified for the tfs backend");
+        }
+        return tachyonMasterLoc;
+    }
+}
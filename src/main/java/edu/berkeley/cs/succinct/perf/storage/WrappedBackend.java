@@ -0,0 +1,48 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Reads the data of another backend through a WrappingFileSystem.
+ */
+public abstract class WrappedBackend extends HadoopStorageBackend {
+
+    protected final HadoopStorageBackend backend;
+
+    protected WrappedBackend(HadoopStorageBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * @return scheme of the wrapping file system
+     */
+    protected abstract String getScheme();
+
+    /**
+     * Registers the wrapping file system in a configuration.
+     * @param conf configuration of the wrapped backend
+     * @param targetScheme scheme of the wrapped backend's file system
+     * @return the configuration
+     */
+    protected abstract Configuration register(Configuration conf, String targetScheme);
+
+    @Override
+    public Path getPath(String path) throws IOException {
+        URI target = qualify(path).toUri();
+        return new Path(getScheme(), target.getAuthority(), target.getPath());
+    }
+
+    @Override
+    public Configuration getConf() throws IOException {
+        return register(backend.getConf(), qualify(".").toUri().getScheme());
+    }
+
+    private Path qualify(String path) throws IOException {
+        Path p = backend.getPath(path);
+        return p.getFileSystem(backend.getConf()).makeQualified(p);
+    }
+}
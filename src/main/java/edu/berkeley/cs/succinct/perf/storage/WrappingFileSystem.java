@@ -0,0 +1,114 @@
+package edu.berkeley.cs.succinct.perf.storage;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.util.Progressable;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Base class of read-only Hadoop FileSystems that wrap another file system and change how its
+ * files are read. Paths are those of the wrapped file system with the scheme replaced by the
+ * wrapper's, e.g. wrapper://namenode:8020/data.succinct refers to
+ * hdfs://namenode:8020/data.succinct when the target scheme is hdfs. Wrappers can be stacked.
+ */
+public abstract class WrappingFileSystem extends FileSystem {
+
+    private static final long BLOCK_SIZE = 128L << 20;
+
+    protected FileSystem target;
+    private String targetScheme;
+    private URI uri;
+
+    /**
+     * Registers a wrapping file system in a configuration.
+     * @param conf the configuration
+     * @param scheme scheme of the wrapper
+     * @param impl class of the wrapper
+     * @param targetScheme scheme of the wrapped file system, e.g. hdfs or file
+     * @return the configuration
+     */
+    protected static Configuration register(Configuration conf, String scheme,
+        Class<? extends WrappingFileSystem> impl, String targetScheme) {
+        conf.set("fs." + scheme + ".impl", impl.getName());
+        conf.set("succinct.perf." + scheme + ".target.scheme", targetScheme);
+        return conf;
+    }
+
+    @Override
+    public abstract String getScheme();
+
+    @Override
+    public void initialize(URI name, Configuration conf) throws IOException {
+        super.initialize(name, conf);
+        setConf(conf);
+        this.uri = URI.create(getScheme() + "://" + (name.getAuthority() == null ? "" : name.getAuthority()) + "/");
+        this.targetScheme = conf.get("succinct.perf." + getScheme() + ".target.scheme", "file");
+        this.target = FileSystem.get(toTarget(new Path(uri)).toUri(), conf);
+    }
+
+    @Override
+    public URI getUri() {
+        return uri;
+    }
+
+    @Override
+    public FileStatus getFileStatus(Path f) throws IOException {
+        FileStatus status = target.getFileStatus(toTarget(f));
+        return new FileStatus(status.getLen(), status.isDirectory(), 1, BLOCK_SIZE, 0, f);
+    }
+
+    @Override
+    public FileStatus[] listStatus(Path f) throws IOException {
+        return new FileStatus[] { getFileStatus(f) };
+    }
+
+    @Override
+    public FSDataOutputStream create(Path f, FsPermission permission, boolean overwrite, int bufferSize,
+        short replication, long blockSize, Progressable progress) throws IOException {
+        throw new IOException(getScheme() + " is read-only");
+    }
+
+    @Override
+    public FSDataOutputStream append(Path f, int bufferSize, Progressable progress) throws IOException {
+        throw new IOException(getScheme() + " is read-only");
+    }
+
+    @Override
+    public boolean rename(Path src, Path dst) throws IOException {
+        throw new IOException(getScheme() + " is read-only");
+    }
+
+    @Override
+    public boolean delete(Path f, boolean recursive) throws IOException {
+        throw new IOException(getScheme() + " is read-only");
+    }
+
+    @Override
+    public boolean mkdirs(Path f, FsPermission permission) throws IOException {
+        throw new IOException(getScheme() + " is read-only");
+    }
+
+    @Override
+    public void setWorkingDirectory(Path dir) {
+        target.setWorkingDirectory(toTarget(dir));
+    }
+
+    @Override
+    public Path getWorkingDirectory() {
+        return target.getWorkingDirectory();
+    }
+
+    /**
+     * @return the path of f on the wrapped file system
+     */
+    protected Path toTarget(Path f) {
+        URI u = f.toUri();
+        return new Path(targetScheme, u.getAuthority(), u.getPath());
+    }
+}
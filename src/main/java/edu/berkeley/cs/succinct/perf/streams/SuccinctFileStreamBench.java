@@ -1,7 +1,16 @@
 package edu.berkeley.cs.succinct.perf.streams;
 
 import edu.berkeley.cs.succinct.perf.BenchmarkUtils;
+import edu.berkeley.cs.succinct.perf.LatencyRecorder;
+import edu.berkeley.cs.succinct.perf.QueryCorpus;
+import edu.berkeley.cs.succinct.perf.storage.CachingFileSystem;
+import edu.berkeley.cs.succinct.perf.storage.HadoopStorageBackend;
+import edu.berkeley.cs.succinct.perf.storage.PageCache;
+import edu.berkeley.cs.succinct.perf.storage.StorageBackend;
 import edu.berkeley.cs.succinct.streams.SuccinctFileStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
 import java.io.BufferedWriter;
@@ -10,52 +19,78 @@ import java.io.IOException;
 
 public class SuccinctFileStreamBench {
     private static final int MAX_QUERIES = 1000;
+    private static final int SCANS = 10;
+    private static final long SCAN_BYTES = 1L << 20;
     private SuccinctFileStream buffer;
+    // Serialized file behind the stream and its configuration, for raw file reads; null if the
+    // backend does not read through a Hadoop FileSystem
+    private Path dataFile;
+    private Configuration conf;
 
     public SuccinctFileStreamBench(String serializedDataPath) throws IOException {
-        buffer = new SuccinctFileStream(new Path(serializedDataPath), BenchmarkUtils.getConf());
+        dataFile = new Path(serializedDataPath);
+        conf = BenchmarkUtils.getConf();
+        buffer = new SuccinctFileStream(dataFile, conf);
+    }
+
+    public SuccinctFileStreamBench(StorageBackend backend, String serializedDataPath) throws IOException {
+        buffer = backend.openFileStream(serializedDataPath);
+        if (backend instanceof HadoopStorageBackend) {
+            dataFile = ((HadoopStorageBackend) backend).getPath(serializedDataPath);
+            conf = ((HadoopStorageBackend) backend).getConf();
+        }
     }
 
     public void benchCount(String queryFile, String resPath) throws IOException {
         System.out.println("Benchmarking count...");
 
-        String[] queries = BenchmarkUtils.readQueryFile(queryFile, MAX_QUERIES);
+        QueryCorpus corpus = BenchmarkUtils.readQueryCorpus(queryFile, MAX_QUERIES);
+        byte[][] queries = corpus.toByteArrays();
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("count");
+        PageCache.Stats cacheBefore = PageCache.sharedStats();
+        long[] counts = new long[queries.length];
+        long[] latencies = new long[queries.length];
 
-        for(String query: queries) {
+        int q = 0;
+        for(byte[] query: queries) {
             long start = System.nanoTime();
-            long count = buffer.count(query.getBytes());
+            long count = buffer.count(query);
             long end = System.nanoTime();
-            bufferedWriter.write(count + "\t" + (end - start) + "\n");
-            totalTime += (end - start);
+            counts[q] = count;
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / MAX_QUERIES;
-        System.out.println("Average time per count query: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        PageCache.printStats(cacheBefore);
+        BenchmarkUtils.checkExpectedCounts(corpus, counts);
+        BenchmarkUtils.writeResults(resPath, counts, latencies);
     }
 
     public void benchSearch(String queryFile, String resPath) throws IOException {
         System.out.println("Benchmarking search...");
 
-        String[] queries = BenchmarkUtils.readQueryFile(queryFile, MAX_QUERIES);
+        byte[][] queries = BenchmarkUtils.readQueryBytes(queryFile, MAX_QUERIES);
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("search");
+        PageCache.Stats cacheBefore = PageCache.sharedStats();
+        long[] counts = new long[queries.length];
+        long[] latencies = new long[queries.length];
 
-        for(String query: queries) {
+        int q = 0;
+        for(byte[] query: queries) {
             long start = System.nanoTime();
-            Long[] results = buffer.search(query.getBytes());
+            Long[] results = buffer.search(query);
             long end = System.nanoTime();
-            bufferedWriter.write(results.length + "\t" + (end - start) + "\n");
-            totalTime += (end - start);
+            counts[q] = results.length;
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / MAX_QUERIES;
-        System.out.println("Average time per search query: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        PageCache.printStats(cacheBefore);
+        BenchmarkUtils.writeResults(resPath, counts, latencies);
     }
 
     public void benchExtract(String resPath) throws IOException {
@@ -64,20 +99,168 @@ public class SuccinctFileStreamBench {
         int extractLength = 1000;
         long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize() - extractLength);
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("extract");
+        PageCache.Stats cacheBefore = PageCache.sharedStats();
+        long[] lengths = new long[randoms.length];
+        long[] latencies = new long[randoms.length];
 
+        int q = 0;
         for(long offset: randoms) {
             long start = System.nanoTime();
-            byte[] result = buffer.extract((int) offset, extractLength);
+            byte[] result = buffer.extract(offset, extractLength);
             long end = System.nanoTime();
-            bufferedWriter.write(result.length + "\t" + (end - start) + "\n");
-            totalTime += (end - start);
+            lengths[q] = result.length;
+            latencies[q++] = end - start;
+            recorder.record(end - start);
+        }
+
+        recorder.report(resPath);
+        PageCache.printStats(cacheBefore);
+        BenchmarkUtils.writeResults(resPath, lengths, latencies);
+    }
+
+    /**
+     * Compares page-cache readahead off and on, after an untimed pass through both, over three
+     * access patterns: sequential reads of the serialized file itself, sequential scans of the
+     * text (consecutive extracts, which read scattered file positions through the NPA), and
+     * random extracts. Each run starts from a cold cache, once prefetches queued by the previous
+     * run have finished, and reports how many pages were prefetched. The run fails if readahead
+     * is on but never triggered during the sequential file reads.
+     * @param resPath output path of the CSV summary
+     * @param extractLength length of each extract, and of each read of the file
+     * @param maxReadahead readahead window in pages for the run with readahead on
+     * @throws IOException
+     */
+    public void benchReadahead(String resPath, int extractLength, int maxReadahead) throws IOException {
+        System.out.println("Benchmarking readahead...");
+
+        PageCache cache = PageCache.getShared();
+        if (cache == null || dataFile == null) {
+            System.out.println("Readahead needs the page cache; enable it with -pc");
+            return;
+        }
+
+        FileSystem fs = dataFile.getFileSystem(conf);
+        long fileSize = fs.getFileStatus(dataFile).getLen();
+        long fileScanLength = Math.min(SCAN_BYTES, fileSize - extractLength);
+        long[] fileScanStarts = BenchmarkUtils.generateRandoms(SCANS, fileSize - fileScanLength - extractLength);
+        long scanLength = Math.min(SCAN_BYTES, buffer.getOriginalSize() - extractLength);
+        long[] scanStarts = BenchmarkUtils.generateRandoms(SCANS, buffer.getOriginalSize() - scanLength - extractLength);
+        long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize() - extractLength);
+
+        int savedReadahead = CachingFileSystem.getMaxReadahead();
+
+        // Untimed pass through both modes, so that the first timed mode does not run on a cold JIT
+        long sum = 0;
+        for (int readahead : new int[] { 0, maxReadahead }) {
+            CachingFileSystem.setMaxReadahead(readahead);
+            sum += scanFile(fs, new long[] { fileScanStarts[0] }, fileScanLength, extractLength);
+            sum += scanText(new long[] { scanStarts[0] }, scanLength, extractLength);
+            for (long offset : randoms) {
+                sum += buffer.extract(offset, extractLength).length;
+            }
         }
+        System.out.println("Warmup complete: Checksum = " + sum);
+
+        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        bufferedWriter.write("mode,file_scan_mb_per_s,file_scan_prefetches,text_scan_mb_per_s,text_scan_prefetches,"
+            + "random_extracts_per_s,random_prefetches\n");
+        for (int readahead : new int[] { 0, maxReadahead }) {
+            String mode = readahead > 0 ? "readahead(" + readahead + " pages)" : "off";
+            CachingFileSystem.setMaxReadahead(readahead);
+
+            clearCache(cache);
+            PageCache.Stats cacheBefore = cache.stats();
+            long prefetchesBefore = CachingFileSystem.prefetchesIssued();
+            long start = System.nanoTime();
+            long scanned = scanFile(fs, fileScanStarts, fileScanLength, extractLength);
+            double fileScanMBps = (scanned / (1024.0 * 1024.0)) / ((System.nanoTime() - start) / 1e9);
+            long fileScanPrefetches = CachingFileSystem.prefetchesIssued() - prefetchesBefore;
+            System.out.println(mode + ": sequential file scan = " + fileScanMBps + " MB/s, " + fileScanPrefetches
+                + " pages prefetched");
+            PageCache.printStats(cacheBefore);
+            if (readahead > 0 && fileScanPrefetches == 0) {
+                bufferedWriter.close();
+                CachingFileSystem.setMaxReadahead(savedReadahead);
+                throw new IllegalStateException("Readahead is on but never triggered during the sequential file scan");
+            }
 
-        double avgTime = totalTime / MAX_QUERIES;
-        System.out.println("Average time per extract query: " + avgTime);
+            clearCache(cache);
+            cacheBefore = cache.stats();
+            prefetchesBefore = CachingFileSystem.prefetchesIssued();
+            start = System.nanoTime();
+            scanned = scanText(scanStarts, scanLength, extractLength);
+            double textScanMBps = (scanned / (1024.0 * 1024.0)) / ((System.nanoTime() - start) / 1e9);
+            long textScanPrefetches = CachingFileSystem.prefetchesIssued() - prefetchesBefore;
+            System.out.println(mode + ": sequential text scan = " + textScanMBps + " MB/s, " + textScanPrefetches
+                + " pages prefetched");
+            PageCache.printStats(cacheBefore);
+
+            clearCache(cache);
+            cacheBefore = cache.stats();
+            prefetchesBefore = CachingFileSystem.prefetchesIssued();
+            start = System.nanoTime();
+            for (long offset : randoms) {
+                buffer.extract(offset, extractLength);
+            }
+            double extractsPerSec = randoms.length / ((System.nanoTime() - start) / 1e9);
+            long randomPrefetches = CachingFileSystem.prefetchesIssued() - prefetchesBefore;
+            System.out.println(mode + ": random extract = " + extractsPerSec + " extracts/s, " + randomPrefetches
+                + " pages prefetched");
+            PageCache.printStats(cacheBefore);
+
+            bufferedWriter.write(mode + "," + fileScanMBps + "," + fileScanPrefetches + "," + textScanMBps + ","
+                + textScanPrefetches + "," + extractsPerSec + "," + randomPrefetches + "\n");
+        }
         bufferedWriter.close();
+        CachingFileSystem.setMaxReadahead(savedReadahead);
+    }
+
+    /**
+     * Reads scanLength bytes of the serialized file from each start, in consecutive positional
+     * reads of chunkSize bytes, on a stream of its own.
+     * @return number of bytes read
+     */
+    private long scanFile(FileSystem fs, long[] starts, long scanLength, int chunkSize) throws IOException {
+        byte[] chunk = new byte[chunkSize];
+        long scanned = 0;
+        try (FSDataInputStream in = fs.open(dataFile)) {
+            for (long scanStart : starts) {
+                for (long offset = scanStart; offset < scanStart + scanLength; offset += chunkSize) {
+                    in.readFully(offset, chunk);
+                    scanned += chunkSize;
+                }
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Extracts scanLength bytes of text from each start, in consecutive extracts of extractLength.
+     * @return number of bytes extracted
+     */
+    private long scanText(long[] starts, long scanLength, int extractLength) {
+        long scanned = 0;
+        for (long scanStart : starts) {
+            for (long offset = scanStart; offset < scanStart + scanLength; offset += extractLength) {
+                scanned += buffer.extract(offset, extractLength).length;
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Empties the page cache once prefetches still queued from earlier reads have landed, so
+     * they cannot repopulate it afterwards.
+     */
+    private static void clearCache(PageCache cache) throws IOException {
+        try {
+            CachingFileSystem.awaitPrefetches();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for prefetches", e);
+        }
+        cache.clear();
     }
 
     public void benchAll(String queryFile, String resPath) throws IOException {
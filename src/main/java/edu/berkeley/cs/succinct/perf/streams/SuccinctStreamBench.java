@@ -1,11 +1,12 @@
 package edu.berkeley.cs.succinct.perf.streams;
 
 import edu.berkeley.cs.succinct.perf.BenchmarkUtils;
+import edu.berkeley.cs.succinct.perf.LatencyRecorder;
+import edu.berkeley.cs.succinct.perf.storage.PageCache;
+import edu.berkeley.cs.succinct.perf.storage.StorageBackend;
 import edu.berkeley.cs.succinct.streams.SuccinctStream;
 import org.apache.hadoop.fs.Path;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 
 public class SuccinctStreamBench {
@@ -16,25 +17,31 @@ public class SuccinctStreamBench {
         buffer = new SuccinctStream(new Path(serializedDataPath), BenchmarkUtils.getConf());
     }
 
+    public SuccinctStreamBench(StorageBackend backend, String serializedDataPath) throws IOException {
+        buffer = backend.openStream(serializedDataPath);
+    }
+
     public void benchLookupNPA(String resPath) throws IOException {
         System.out.println("Benchmarking lookupNPA...");
 
         long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize());
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("lookupNPA");
+        PageCache.Stats cacheBefore = PageCache.sharedStats();
+        long[] latencies = new long[randoms.length];
 
+        int q = 0;
         for(long i: randoms) {
             long start = System.nanoTime();
             buffer.lookupNPA(i);
             long end = System.nanoTime();
-            bufferedWriter.write(i + "\t" + (end - start) + "\n");
-            totalTime += (end - start);
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / MAX_QUERIES;
-        System.out.println("Average time per NPA lookup: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        PageCache.printStats(cacheBefore);
+        BenchmarkUtils.writeResults(resPath, randoms, latencies);
     }
 
     public void benchLookupSA(String resPath) throws IOException {
@@ -42,20 +49,22 @@ public class SuccinctStreamBench {
 
         long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize());
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("lookupSA");
+        PageCache.Stats cacheBefore = PageCache.sharedStats();
+        long[] latencies = new long[randoms.length];
 
+        int q = 0;
         for(long i: randoms) {
             long start = System.nanoTime();
             buffer.lookupSA(i);
             long end = System.nanoTime();
-            bufferedWriter.write(i + "\t" + (end - start) + "\n");
-            totalTime += (end - start);
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / MAX_QUERIES;
-        System.out.println("Average time per SA lookup: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        PageCache.printStats(cacheBefore);
+        BenchmarkUtils.writeResults(resPath, randoms, latencies);
     }
 
     public void benchLookupISA(String resPath) throws IOException {
@@ -63,20 +72,22 @@ public class SuccinctStreamBench {
 
         long[] randoms = BenchmarkUtils.generateRandoms(MAX_QUERIES, buffer.getOriginalSize());
 
-        double totalTime = 0.0;
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(resPath));
+        LatencyRecorder recorder = new LatencyRecorder("lookupISA");
+        PageCache.Stats cacheBefore = PageCache.sharedStats();
+        long[] latencies = new long[randoms.length];
 
+        int q = 0;
         for(long i: randoms) {
             long start = System.nanoTime();
             buffer.lookupISA(i);
             long end = System.nanoTime();
-            bufferedWriter.write(i + "\t" + (end - start) + "\n");
-            totalTime += (end - start);
+            latencies[q++] = end - start;
+            recorder.record(end - start);
         }
 
-        double avgTime = totalTime / MAX_QUERIES;
-        System.out.println("Average time per ISA lookup: " + avgTime);
-        bufferedWriter.close();
+        recorder.report(resPath);
+        PageCache.printStats(cacheBefore);
+        BenchmarkUtils.writeResults(resPath, randoms, latencies);
     }
 
     public void benchAll(String resPath) throws IOException {
@@ -0,0 +1,36 @@
+package edu.berkeley.cs.succinct.perf.workload;
+
+import java.util.Random;
+
+/**
+ * A contiguous hot region of hotFraction * limit keys, starting at a random position,
+ * receives hotOpFraction of the accesses; the rest are uniform over the cold keys.
+ */
+public class HotspotGenerator implements KeyGenerator {
+    private final long limit;
+    private final long hotStart;
+    private final long hotSize;
+    private final double hotOpFraction;
+    private final Random rand;
+
+    public HotspotGenerator(long limit, double hotFraction, double hotOpFraction, Random rand) {
+        if (hotFraction <= 0 || hotFraction > 1 || hotOpFraction < 0 || hotOpFraction > 1) {
+            throw new IllegalArgumentException("Hotspot fractions must be in (0, 1]");
+        }
+        this.limit = limit;
+        this.hotSize = Math.max(1, (long) (hotFraction * limit));
+        this.hotStart = rand.nextLong(limit - hotSize + 1);
+        this.hotOpFraction = hotOpFraction;
+        this.rand = rand;
+    }
+
+    @Override
+    public long next() {
+        if (hotSize == limit || rand.nextDouble() < hotOpFraction) {
+            return hotStart + rand.nextLong(hotSize);
+        }
+        // Uniform over the cold keys on either side of the hot region
+        long key = rand.nextLong(limit - hotSize);
+        return key < hotStart ? key : key + hotSize;
+    }
+}
@@ -0,0 +1,13 @@
+package edu.berkeley.cs.succinct.perf.workload;
+
+/**
+ * Generates a stream of keys (offsets, array indices or query numbers) in [0, limit).
+ * Implementations are not thread-safe.
+ */
+public interface KeyGenerator {
+
+    /**
+     * @return the next key
+     */
+    long next();
+}
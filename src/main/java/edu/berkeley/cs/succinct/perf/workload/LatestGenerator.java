@@ -0,0 +1,22 @@
+package edu.berkeley.cs.succinct.perf.workload;
+
+import java.util.Random;
+
+/**
+ * Zipfian-distributed keys skewed towards the end of the key space, i.e. towards the most
+ * recently appended data.
+ */
+public class LatestGenerator implements KeyGenerator {
+    private final long limit;
+    private final ZipfianGenerator zipfian;
+
+    public LatestGenerator(long limit, double theta, Random rand) {
+        this.limit = limit;
+        this.zipfian = new ZipfianGenerator(limit, theta, false, rand);
+    }
+
+    @Override
+    public long next() {
+        return limit - 1 - zipfian.nextRank();
+    }
+}
@@ -0,0 +1,114 @@
+package edu.berkeley.cs.succinct.perf.workload;
+
+import java.util.Random;
+
+/**
+ * A weighted mix of count, search and extract operations, parsed from a specification of the
+ * form op:weight[:distribution],... such as extract:70,search:20:zipfian:0.99,count:10.
+ * Weights are relative. The optional distribution (any Workload specification) applies to that
+ * operation alone: it picks the offsets of extracts, or the queries of counts and searches.
+ */
+public class OperationMix {
+
+    public enum Operation {
+        COUNT,
+        SEARCH,
+        EXTRACT
+    }
+
+    private final double[] fractions = new double[Operation.values().length];
+    private final Workload[] distributions = new Workload[Operation.values().length];
+
+    private OperationMix() {
+    }
+
+    public static OperationMix parse(String spec) {
+        OperationMix mix = new OperationMix();
+        double total = 0;
+        for (String part : spec.split(",")) {
+            String[] fields = part.trim().split(":", 3);
+            if (fields.length < 2) {
+                throw new IllegalArgumentException("Operation mix entry must be op:weight[:distribution]: " + part);
+            }
+            Operation op;
+            try {
+                op = Operation.valueOf(fields[0].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown operation in mix: " + fields[0]);
+            }
+            double weight = Double.parseDouble(fields[1]);
+            if (weight < 0) {
+                throw new IllegalArgumentException("Operation weights must not be negative: " + part);
+            }
+            mix.fractions[op.ordinal()] += weight;
+            total += weight;
+            if (fields.length == 3) {
+                mix.distributions[op.ordinal()] = Workload.parse(fields[2]);
+            }
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Operation mix has no positive weights: " + spec);
+        }
+        for (int i = 0; i < mix.fractions.length; i++) {
+            mix.fractions[i] /= total;
+        }
+        return mix;
+    }
+
+    /**
+     * @return fraction of operations that are op
+     */
+    public double getFraction(Operation op) {
+        return fractions[op.ordinal()];
+    }
+
+    /**
+     * @param op an operation
+     * @param defaultDistribution distribution to use if none was specified for op
+     * @return the distribution of op's offsets or queries
+     */
+    public Workload getDistribution(Operation op, Workload defaultDistribution) {
+        Workload distribution = distributions[op.ordinal()];
+        return distribution != null ? distribution : defaultDistribution;
+    }
+
+    /**
+     * Draws a sequence of operations from the mix.
+     * @param n length of the sequence
+     * @param rand source of randomness
+     * @return the operations
+     */
+    public Operation[] generate(int n, Random rand) {
+        Operation[] ops = new Operation[n];
+        for (int i = 0; i < n; i++) {
+            double r = rand.nextDouble();
+            int op = 0;
+            while (op < fractions.length - 1 && (r -= fractions[op]) >= 0) {
+                op++;
+            }
+            while (fractions[op] == 0) {
+                // Rounding left r in a zero-weight tail; use the last operation in the mix
+                op--;
+            }
+            ops[i] = Operation.values()[op];
+        }
+        return ops;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Operation op : Operation.values()) {
+            if (fractions[op.ordinal()] > 0) {
+                if (sb.length() > 0) {
+                    sb.append(",");
+                }
+                sb.append(op.name().toLowerCase()).append(":").append(String.format("%.1f", 100 * fractions[op.ordinal()]));
+                if (distributions[op.ordinal()] != null) {
+                    sb.append(":").append(distributions[op.ordinal()]);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
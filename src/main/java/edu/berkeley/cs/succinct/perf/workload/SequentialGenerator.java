@@ -0,0 +1,29 @@
+package edu.berkeley.cs.succinct.perf.workload;
+
+import java.util.Random;
+
+/**
+ * Keys in increasing order with a fixed stride, starting at a random position and wrapping
+ * around at the limit; models a sequential scan.
+ */
+public class SequentialGenerator implements KeyGenerator {
+    private final long limit;
+    private final long stride;
+    private long next;
+
+    public SequentialGenerator(long limit, long stride, Random rand) {
+        this.limit = limit;
+        this.stride = stride;
+        this.next = rand.nextLong(limit);
+    }
+
+    @Override
+    public long next() {
+        long key = next;
+        next += stride;
+        if (next >= limit) {
+            next %= limit;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,21 @@
+package edu.berkeley.cs.succinct.perf.workload;
+
+import java.util.Random;
+
+/**
+ * Keys drawn uniformly at random from [0, limit).
+ */
+public class UniformGenerator implements KeyGenerator {
+    private final long limit;
+    private final Random rand;
+
+    public UniformGenerator(long limit, Random rand) {
+        this.limit = limit;
+        this.rand = rand;
+    }
+
+    @Override
+    public long next() {
+        return rand.nextLong(limit);
+    }
+}
@@ -0,0 +1,105 @@
+package edu.berkeley.cs.succinct.perf.workload;
+
+import java.util.Random;
+
+/**
+ * A key distribution, parsed from a specification of the form name[:param[:param]]:
+ * <ul>
+ *   <li>uniform</li>
+ *   <li>zipfian[:theta] (default theta 0.99)</li>
+ *   <li>hotspot[:hotFraction[:hotOpFraction]] (default 0.2:0.8)</li>
+ *   <li>latest[:theta] (default theta 0.99)</li>
+ *   <li>sequential[:stride] (default stride 1; at least 1)</li>
+ * </ul>
+ */
+public class Workload {
+
+    public static final Workload UNIFORM = new Workload(Type.UNIFORM, new double[0]);
+
+    private enum Type {
+        UNIFORM,
+        ZIPFIAN,
+        HOTSPOT,
+        LATEST,
+        SEQUENTIAL
+    }
+
+    private final Type type;
+    private final double[] params;
+
+    private Workload(Type type, double[] params) {
+        this.type = type;
+        this.params = params;
+    }
+
+    public static Workload parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        Type type;
+        try {
+            type = Type.valueOf(parts[0].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown workload distribution: " + parts[0]);
+        }
+        double[] params = new double[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) {
+            params[i - 1] = Double.parseDouble(parts[i]);
+        }
+        if (type == Type.SEQUENTIAL && params.length > 0 && (long) params[0] < 1) {
+            // A stride of 0 repeats one key, and a negative one runs below zero
+            throw new IllegalArgumentException("Sequential stride must be at least 1: " + parts[1]);
+        }
+        return new Workload(type, params);
+    }
+
+    /**
+     * Creates a generator for keys in [0, limit).
+     * @param limit exclusive upper bound of the keys
+     * @param rand source of randomness
+     * @return the generator
+     */
+    public KeyGenerator newGenerator(long limit, Random rand) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Key space must be non-empty");
+        }
+        switch (type) {
+            case ZIPFIAN:
+                return new ZipfianGenerator(limit, param(0, 0.99), true, rand);
+            case HOTSPOT:
+                return new HotspotGenerator(limit, param(0, 0.2), param(1, 0.8), rand);
+            case LATEST:
+                return new LatestGenerator(limit, param(0, 0.99), rand);
+            case SEQUENTIAL:
+                return new SequentialGenerator(limit, (long) param(0, 1), rand);
+            default:
+                return new UniformGenerator(limit, rand);
+        }
+    }
+
+    /**
+     * Generates keys in [0, limit).
+     * @param numKeys number of keys
+     * @param limit exclusive upper bound of the keys
+     * @return the keys
+     */
+    public long[] generate(int numKeys, long limit) {
+        KeyGenerator generator = newGenerator(limit, new Random());
+        long[] keys = new long[numKeys];
+        for (int i = 0; i < numKeys; i++) {
+            keys[i] = generator.next();
+        }
+        return keys;
+    }
+
+    private double param(int i, double defaultValue) {
+        return i < params.length ? params[i] : defaultValue;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(type.name().toLowerCase());
+        for (double p : params) {
+            sb.append(":").append(p);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package edu.berkeley.cs.succinct.perf.workload;
+
+import java.util.Random;
+
+/**
+ * Zipfian-distributed keys over [0, limit), using the rejection-free method of Gray et al.
+ * ("Quickly generating billion-record synthetic databases"), as in YCSB.
+ *
+ * Rank r is drawn with probability proportional to 1 / (r + 1)^theta. By default ranks are
+ * scrambled with a hash so that popular keys are spread over the key space rather than
+ * clustered at its start; unscrambled ranks can be mapped to keys by the caller (see
+ * {@link LatestGenerator}).
+ */
+public class ZipfianGenerator implements KeyGenerator {
+
+    // Terms of the zeta sum computed exactly; the rest is approximated
+    private static final long EXACT_ZETA_TERMS = 1000000L;
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final long limit;
+    private final double theta;
+    private final boolean scrambled;
+    private final Random rand;
+
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+    private final double halfPowTheta;
+
+    public ZipfianGenerator(long limit, double theta, boolean scrambled, Random rand) {
+        if (theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("Zipfian theta must be in (0, 1), got " + theta);
+        }
+        this.limit = limit;
+        this.theta = theta;
+        this.scrambled = scrambled;
+        this.rand = rand;
+
+        this.zetaN = zeta(limit, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / limit, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        this.halfPowTheta = 1 + Math.pow(0.5, theta);
+    }
+
+    /**
+     * @return the next rank, 0 being the most popular
+     */
+    public long nextRank() {
+        double u = rand.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < halfPowTheta) {
+            return Math.min(1, limit - 1);
+        }
+        long rank = (long) (limit * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, limit - 1);
+    }
+
+    @Override
+    public long next() {
+        long rank = nextRank();
+        return scrambled ? Math.floorMod(fnvHash(rank), limit) : rank;
+    }
+
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * Computes sum_{i=1..n} 1/i^theta, exactly for the first terms and with an
+     * Euler-Maclaurin approximation of the tail, so large key spaces stay cheap.
+     */
+    static double zeta(long n, double theta) {
+        long exact = Math.min(n, EXACT_ZETA_TERMS);
+        double sum = 0;
+        for (long i = 1; i <= exact; i++) {
+            sum += 1.0 / Math.pow(i, theta);
+        }
+        if (n > exact) {
+            sum += (Math.pow(n, 1 - theta) - Math.pow(exact, 1 - theta)) / (1 - theta)
+                + 0.5 * (Math.pow(n, -theta) - Math.pow(exact, -theta));
+        }
+        return sum;
+    }
+
+    private static long fnvHash(long value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < 8; i++) {
+            hash ^= value & 0xFF;
+            hash *= FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}